@@ -0,0 +1,110 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * InputStream over the remaining content of a ByteBuffer, e.g. a mapped file.
+ * Stores may return it from {@link IWebdavStore#getResourceContent}, so
+ * that callers can write the content without an intermediate copy.
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    private static int BUF_SIZE = 65536;
+
+    private static final ThreadLocal<byte[]> COPY_BUFFER = ThreadLocal
+            .withInitial(() -> new byte[BUF_SIZE]);
+
+    private final ByteBuffer _buffer;
+
+    /**
+     * @param buffer
+     *      the content, from its position to its limit. The stream moves the
+     *      position of the buffer.
+     */
+    public ByteBufferInputStream(final ByteBuffer buffer) {
+        _buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        return _buffer.hasRemaining() ? _buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!_buffer.hasRemaining()) {
+            return -1;
+        }
+        final int read = Math.min(len, _buffer.remaining());
+        _buffer.get(b, off, read);
+        return read;
+    }
+
+    @Override
+    public long skip(final long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        final int skipped = (int) Math.min(n, _buffer.remaining());
+        _buffer.position(_buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return _buffer.remaining();
+    }
+
+    /**
+     * Writes all remaining content to <code>out</code>. Heap buffers are
+     * written in one call, other buffers directly if <code>out</code> is a
+     * channel, otherwise through a copy buffer reused by the thread.
+     *
+     * @param out
+     *      where to write the content
+     * @throws IOException
+     *      if writing fails
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        if (_buffer.hasArray()) {
+            out.write(_buffer.array(), _buffer.arrayOffset()
+                    + _buffer.position(), _buffer.remaining());
+            _buffer.position(_buffer.limit());
+        } else if (out instanceof WritableByteChannel) {
+            final WritableByteChannel channel = (WritableByteChannel) out;
+            while (_buffer.hasRemaining()) {
+                channel.write(_buffer);
+            }
+        } else {
+            final byte[] copyBuffer = COPY_BUFFER.get();
+            while (_buffer.hasRemaining()) {
+                final int read = Math.min(copyBuffer.length, _buffer
+                        .remaining());
+                _buffer.get(copyBuffer, 0, read);
+                out.write(copyBuffer, 0, read);
+            }
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav;
+
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.gv2011.webdav.exceptions.WebdavException;
+
+/**
+ * WebdavStore which caches the StoredObjects and the children names read from
+ * another store.
+ * <p>
+ * The cache is least recently used, bounded by a weight (one per
+ * StoredObject, one per child name), and entries expire after a time to
+ * live. Writes through this store invalidate the affected entries; changes
+ * made to the backend by other means become visible when the entries
+ * expire. The cache is shared by all transactions, so it should not be put
+ * in front of a store which isolates uncommitted changes. A rollback clears
+ * the cache.
+ * <p>
+ * The StoredObjects returned are copies, so callers can modify them.
+ */
+public class CachingStore extends DelegatingStore {
+
+    private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory
+            .getLogger(CachingStore.class);
+
+    private final long _maxWeight;
+    private final long _timeToLive;
+
+    private final LinkedHashMap<String, Entry> _entries = new LinkedHashMap<>(
+            16, 0.75f, true);
+    private long _weight;
+
+    /**
+     * Counts invalidations, so that values read from the backend before an
+     * invalidation are not cached after it.
+     */
+    private long _generation;
+
+    /**
+     * @param delegate
+     *      the store to cache
+     * @param maxWeight
+     *      maximum number of StoredObjects and children names in the cache
+     * @param timeToLive
+     *      milliseconds after which a cached value is read again from the
+     *      backend
+     */
+    public CachingStore(final IWebdavStore delegate, final long maxWeight,
+            final long timeToLive) {
+        super(delegate);
+        _maxWeight = maxWeight;
+        _timeToLive = timeToLive;
+    }
+
+    @Override
+    public void rollback(final ITransaction transaction) {
+        try {
+            super.rollback(transaction);
+        } finally {
+            clear();
+        }
+    }
+
+    @Override
+    public void createFolder(final ITransaction transaction, final String folderUri) {
+        try {
+            super.createFolder(transaction, folderUri);
+        } finally {
+            invalidate(folderUri, false, true);
+        }
+    }
+
+    @Override
+    public void createResource(final ITransaction transaction, final String resourceUri) {
+        try {
+            super.createResource(transaction, resourceUri);
+        } finally {
+            invalidate(resourceUri, false, true);
+        }
+    }
+
+    @Override
+    public long setResourceContent(final ITransaction transaction,
+            final String resourceUri, final InputStream content,
+            final String contentType, final String characterEncoding) {
+        try {
+            return super.setResourceContent(transaction, resourceUri, content,
+                    contentType, characterEncoding);
+        } finally {
+            invalidate(resourceUri, false, false);
+        }
+    }
+
+    @Override
+    public long setResourceContent(final ITransaction transaction,
+            final String resourceUri, final InputStream content,
+            final String contentType, final String characterEncoding,
+            final long contentLength) {
+        try {
+            return super.setResourceContent(transaction, resourceUri, content,
+                    contentType, characterEncoding, contentLength);
+        } finally {
+            invalidate(resourceUri, false, false);
+        }
+    }
+
+    @Override
+    public ResourceWriter openResourceWriter(final ITransaction transaction,
+            final String resourceUri, final String contentType,
+            final String characterEncoding, final long contentLength) {
+        return onFinish(super.openResourceWriter(transaction, resourceUri,
+                contentType, characterEncoding, contentLength),
+                () -> invalidate(resourceUri, false, false));
+    }
+
+    @Override
+    public void removeObject(final ITransaction transaction, final String uri) {
+        try {
+            super.removeObject(transaction, uri);
+        } finally {
+            invalidate(uri, false, true);
+        }
+    }
+
+    @Override
+    public void removeTree(final ITransaction transaction, final String folderUri,
+            final Map<String, WebdavException> failures) {
+        try {
+            super.removeTree(transaction, folderUri, failures);
+        } finally {
+            invalidate(folderUri, true, true);
+        }
+    }
+
+    @Override
+    public boolean moveObject(final ITransaction transaction,
+            final String sourceUri, final String destinationUri) {
+        try {
+            return super.moveObject(transaction, sourceUri, destinationUri);
+        } finally {
+            invalidate(sourceUri, true, true);
+            invalidate(destinationUri, true, true);
+        }
+    }
+
+    @Override
+    public boolean copyObject(final ITransaction transaction,
+            final String sourceUri, final String destinationUri) {
+        try {
+            return super.copyObject(transaction, sourceUri, destinationUri);
+        } finally {
+            invalidate(destinationUri, false, true);
+        }
+    }
+
+    @Override
+    public StoredObject getStoredObject(final ITransaction transaction, final String uri) {
+        final String path = normalize(uri);
+        final long generation;
+        synchronized (this) {
+            final Entry entry = _entries.get(path);
+            if (entry != null && entry._storedObject != null
+                    && entry._storedObjectExpires > System.currentTimeMillis()) {
+                return new StoredObject(entry._storedObject);
+            }
+            generation = _generation;
+        }
+        final StoredObject so = super.getStoredObject(transaction, uri);
+        if (so != null) {
+            synchronized (this) {
+                if (generation == _generation) {
+                    entry(path)._storedObject = new StoredObject(so);
+                    entry(path)._storedObjectExpires = System
+                            .currentTimeMillis() + _timeToLive;
+                    evict();
+                }
+            }
+        }
+        return so;
+    }
+
+    @Override
+    public String[] getChildrenNames(final ITransaction transaction, final String folderUri) {
+        final String path = normalize(folderUri);
+        final long generation;
+        synchronized (this) {
+            final Entry entry = _entries.get(path);
+            if (entry != null && entry._children != null
+                    && entry._childrenExpires > System.currentTimeMillis()) {
+                return entry._children.clone();
+            }
+            generation = _generation;
+        }
+        final String[] children = super.getChildrenNames(transaction, folderUri);
+        if (children != null) {
+            synchronized (this) {
+                if (generation == _generation) {
+                    putChildren(path, children.clone());
+                    evict();
+                }
+            }
+        }
+        return children;
+    }
+
+    @Override
+    public Map<String, StoredObject> getChildren(final ITransaction transaction,
+            final String folderUri) {
+        final String path = normalize(folderUri);
+        final long generation;
+        synchronized (this) {
+            final Map<String, StoredObject> cached = getCachedChildren(path);
+            if (cached != null) {
+                return cached;
+            }
+            generation = _generation;
+        }
+        final Map<String, StoredObject> children = super.getChildren(
+                transaction, folderUri);
+        if (children != null) {
+            synchronized (this) {
+                if (generation == _generation) {
+                    final long expires = System.currentTimeMillis() + _timeToLive;
+                    final String prefix = path.equals("/") ? path : path + "/";
+                    for (final Map.Entry<String, StoredObject> child : children
+                            .entrySet()) {
+                        if (child.getValue() != null) {
+                            final Entry entry = entry(prefix + child.getKey());
+                            entry._storedObject = new StoredObject(child
+                                    .getValue());
+                            entry._storedObjectExpires = expires;
+                        }
+                    }
+                    putChildren(path, children.keySet().toArray(
+                            new String[children.size()]));
+                    evict();
+                }
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Builds a listing from the cached children names and StoredObjects.
+     *
+     * @return the listing, <code>null</code> if one of them isn't cached
+     */
+    private Map<String, StoredObject> getCachedChildren(final String path) {
+        final long now = System.currentTimeMillis();
+        final Entry entry = _entries.get(path);
+        if (entry == null || entry._children == null
+                || entry._childrenExpires <= now) {
+            return null;
+        }
+        final String prefix = path.equals("/") ? path : path + "/";
+        final Map<String, StoredObject> children = new LinkedHashMap<>();
+        for (final String name : entry._children) {
+            final Entry child = _entries.get(prefix + name);
+            if (child == null || child._storedObject == null
+                    || child._storedObjectExpires <= now) {
+                return null;
+            }
+            children.put(name, new StoredObject(child._storedObject));
+        }
+        return children;
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public synchronized void clear() {
+        _generation++;
+        _entries.clear();
+        _weight = 0;
+    }
+
+    private void putChildren(final String path, final String[] children) {
+        final Entry entry = entry(path);
+        if (entry._children != null) {
+            entry._weight -= entry._children.length;
+            _weight -= entry._children.length;
+        }
+        entry._children = children;
+        entry._childrenExpires = System.currentTimeMillis() + _timeToLive;
+        entry._weight += children.length;
+        _weight += children.length;
+    }
+
+    private Entry entry(final String path) {
+        Entry entry = _entries.get(path);
+        if (entry == null) {
+            entry = new Entry();
+            _entries.put(path, entry);
+            _weight += entry._weight;
+        }
+        return entry;
+    }
+
+    private void evict() {
+        final Iterator<Entry> eldest = _entries.values().iterator();
+        while (_weight > _maxWeight && eldest.hasNext()) {
+            _weight -= eldest.next()._weight;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Removes the entry of <code>uri</code> from the cache.
+     *
+     * @param subtree
+     *      whether the entries of all descendants are removed as well
+     * @param parent
+     *      whether the children names of the parent are removed as well
+     */
+    private synchronized void invalidate(final String uri,
+            final boolean subtree, final boolean parent) {
+        LOG.trace("CachingStore.invalidate(" + uri + ")");
+        _generation++;
+        final String path = normalize(uri);
+        remove(path);
+        if (subtree) {
+            final String prefix = path.equals("/") ? path : path + "/";
+            final Iterator<Map.Entry<String, Entry>> entries = _entries
+                    .entrySet().iterator();
+            while (entries.hasNext()) {
+                final Map.Entry<String, Entry> entry = entries.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    _weight -= entry.getValue()._weight;
+                    entries.remove();
+                }
+            }
+        }
+        if (parent && !path.equals("/")) {
+            final int slash = path.lastIndexOf('/');
+            remove(slash == 0 ? "/" : path.substring(0, slash));
+        }
+    }
+
+    private void remove(final String path) {
+        final Entry entry = _entries.remove(path);
+        if (entry != null) {
+            _weight -= entry._weight;
+        }
+    }
+
+    private static final class Entry {
+
+        private StoredObject _storedObject;
+        private long _storedObjectExpires;
+        private String[] _children;
+        private long _childrenExpires;
+        private long _weight = 1;
+    }
+}
@@ -0,0 +1,508 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import com.github.gv2011.webdav.exceptions.AccessDeniedException;
+import com.github.gv2011.webdav.exceptions.ObjectNotFoundException;
+import com.github.gv2011.webdav.exceptions.WebdavException;
+
+/**
+ * WebdavStore which stores every distinct content only once.
+ * <p>
+ * Below the root folder, <code>blobs/</code> holds the contents, named by
+ * their SHA-256 hash, each with a count of the resources referring to it.
+ * <code>tree/</code> holds the namespace: folders are folders, and resources
+ * are small files containing the hash of their content. Identical uploads
+ * therefore share one blob, COPY only writes a new reference, MOVE only
+ * renames it, and the hash serves as strong ETag.
+ * <p>
+ * Like {@link LocalFileSystemStore}, the store is not transactional.
+ */
+public class ContentAddressedStore implements IWebdavStore {
+
+    private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory
+            .getLogger(ContentAddressedStore.class);
+
+    private static int BUF_SIZE = 65536;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path _tree;
+    private final Path _blobs;
+    private final Path _temp;
+
+    /**
+     * Guards the reference counts, selected by hash.
+     */
+    private final Object[] _locks = new Object[64];
+
+    /**
+     * Guard reading and replacing the reference of a resource, selected by
+     * path, so that concurrent writes to one resource release its previous
+     * blob only once.
+     */
+    private final Object[] _pathLocks = new Object[64];
+
+    private final String _emptyHash;
+
+    public ContentAddressedStore(final File root) {
+        this(root.toPath());
+    }
+
+    public ContentAddressedStore(final Path root) {
+        _tree = root.resolve("tree");
+        _blobs = root.resolve("blobs");
+        _temp = root.resolve("tmp");
+        for (int i = 0; i < _locks.length; i++) {
+            _locks[i] = new Object();
+        }
+        for (int i = 0; i < _pathLocks.length; i++) {
+            _pathLocks[i] = new Object();
+        }
+        _emptyHash = toHex(newDigest().digest());
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    @Override
+    public ITransaction begin(final Principal principal) throws WebdavException {
+        LOG.trace("ContentAddressedStore.begin()");
+        if (!Files.isDirectory(_temp)) {
+            try {
+                Files.createDirectories(_tree);
+                Files.createDirectories(_blobs);
+                Files.createDirectories(_temp);
+            } catch (final IOException e) {
+                throw new WebdavException("store folders in "
+                        + _tree.getParent().toAbsolutePath()
+                        + " do not exist and could not be created", e);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void checkAuthentication(final ITransaction transaction) {
+        // do nothing
+    }
+
+    @Override
+    public void commit(final ITransaction transaction) throws WebdavException {
+        // do nothing
+        LOG.trace("ContentAddressedStore.commit()");
+    }
+
+    @Override
+    public void rollback(final ITransaction transaction) throws WebdavException {
+        // do nothing
+        LOG.trace("ContentAddressedStore.rollback()");
+    }
+
+    @Override
+    public void createFolder(final ITransaction transaction, final String uri)
+            throws WebdavException {
+        LOG.trace("ContentAddressedStore.createFolder(" + uri + ")");
+        try {
+            Files.createDirectory(resolve(uri));
+        } catch (final IOException e) {
+            throw new WebdavException("cannot create folder: " + uri, e);
+        }
+    }
+
+    @Override
+    public void createResource(final ITransaction transaction, final String uri)
+            throws WebdavException {
+        LOG.trace("ContentAddressedStore.createResource(" + uri + ")");
+        final Path file = resolve(uri);
+        synchronized (pathLock(file)) {
+            if (Files.exists(file)) {
+                throw new WebdavException("cannot create file: " + uri);
+            }
+            try {
+                storeBlob(null, _emptyHash);
+                writeReference(file, _emptyHash);
+            } catch (final IOException e) {
+                throw new WebdavException("cannot create file: " + uri, e);
+            }
+        }
+    }
+
+    @Override
+    public long setResourceContent(final ITransaction transaction, final String uri,
+            final InputStream is, final String contentType, final String characterEncoding)
+            throws WebdavException {
+        LOG.trace("ContentAddressedStore.setResourceContent(" + uri + ")");
+        final Path file = resolve(uri);
+        final Path staged = _temp.resolve(UUID.randomUUID().toString());
+        try {
+            final MessageDigest digest = newDigest();
+            long length = 0;
+            try (OutputStream os = Files.newOutputStream(staged)) {
+                try {
+                    int read;
+                    final byte[] copyBuffer = new byte[BUF_SIZE];
+                    while ((read = is.read(copyBuffer, 0, copyBuffer.length)) != -1) {
+                        digest.update(copyBuffer, 0, read);
+                        os.write(copyBuffer, 0, read);
+                        length += read;
+                    }
+                } finally {
+                    is.close();
+                }
+            }
+            final String hash = toHex(digest.digest());
+            synchronized (pathLock(file)) {
+                final String previous = Files.exists(file) ? readReference(file)
+                        : null;
+                if (!hash.equals(previous)) {
+                    storeBlob(staged, hash);
+                    writeReference(file, hash);
+                    if (previous != null) {
+                        releaseBlob(previous);
+                    }
+                }
+            }
+            return length;
+        } catch (final IOException e) {
+            LOG.error("ContentAddressedStore.setResourceContent(" + uri
+                    + ") failed");
+            throw new WebdavException(e);
+        } finally {
+            try {
+                Files.deleteIfExists(staged);
+            } catch (final IOException e) {
+                LOG.warn("cannot delete " + staged + ": " + e);
+            }
+        }
+    }
+
+    @Override
+    public boolean copyObject(final ITransaction transaction,
+            final String sourceUri, final String destinationUri)
+            throws WebdavException {
+        LOG.trace("ContentAddressedStore.copyObject(" + sourceUri + ", "
+                + destinationUri + ")");
+        final Path source = resolve(sourceUri);
+        final Path destination = resolve(destinationUri);
+        final int first = Math.min(pathStripe(source), pathStripe(destination));
+        final int second = Math.max(pathStripe(source), pathStripe(destination));
+        try {
+            synchronized (_pathLocks[first]) {
+                synchronized (_pathLocks[second]) {
+                    final String hash = readReference(source);
+                    final String previous = Files.isRegularFile(destination)
+                            ? readReference(destination) : null;
+                    if (!hash.equals(previous)) {
+                        storeBlob(null, hash);
+                        writeReference(destination, hash);
+                        if (previous != null) {
+                            releaseBlob(previous);
+                        }
+                    }
+                }
+            }
+            return true;
+        } catch (final IOException e) {
+            throw new WebdavException("cannot copy object: " + sourceUri, e);
+        }
+    }
+
+    @Override
+    public boolean moveObject(final ITransaction transaction,
+            final String sourceUri, final String destinationUri)
+            throws WebdavException {
+        LOG.trace("ContentAddressedStore.moveObject(" + sourceUri + ", "
+                + destinationUri + ")");
+        final Path source = resolve(sourceUri);
+        final Path destination = resolve(destinationUri);
+        final int first = Math.min(pathStripe(source), pathStripe(destination));
+        final int second = Math.max(pathStripe(source), pathStripe(destination));
+        try {
+            synchronized (_pathLocks[first]) {
+                synchronized (_pathLocks[second]) {
+                    // references move along, the counts do not change
+                    Files.move(source, destination,
+                            StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            return true;
+        } catch (final AtomicMoveNotSupportedException e) {
+            return false;
+        } catch (final IOException e) {
+            throw new WebdavException("cannot move object: " + sourceUri, e);
+        }
+    }
+
+    @Override
+    public String[] getChildrenNames(final ITransaction transaction, final String uri)
+            throws WebdavException {
+        LOG.trace("ContentAddressedStore.getChildrenNames(" + uri + ")");
+        final List<String> childList = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(resolve(uri))) {
+            for (final Path child : children) {
+                childList.add(child.getFileName().toString());
+            }
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            return null;
+        } catch (final IOException e) {
+            throw new WebdavException("cannot list folder: " + uri, e);
+        }
+        return childList.toArray(new String[childList.size()]);
+    }
+
+    @Override
+    public void removeObject(final ITransaction transaction, final String uri)
+            throws WebdavException {
+        LOG.trace("ContentAddressedStore.removeObject(" + uri + ")");
+        final Path path = resolve(uri);
+        try {
+            synchronized (pathLock(path)) {
+                final String hash = Files.isRegularFile(path) ? readReference(path)
+                        : null;
+                Files.delete(path);
+                if (hash != null) {
+                    releaseBlob(hash);
+                }
+            }
+        } catch (final IOException e) {
+            throw new WebdavException("cannot delete object: " + uri, e);
+        }
+    }
+
+    @Override
+    public InputStream getResourceContent(final ITransaction transaction, final String uri)
+            throws WebdavException {
+        LOG.trace("ContentAddressedStore.getResourceContent(" + uri + ")");
+        try {
+            return new BufferedInputStream(Files.newInputStream(blob(readReference(resolve(uri)))));
+        } catch (final NoSuchFileException e) {
+            throw new ObjectNotFoundException(uri, e);
+        } catch (final IOException e) {
+            LOG.error("ContentAddressedStore.getResourceContent(" + uri
+                    + ") failed");
+            throw new WebdavException(e);
+        }
+    }
+
+    @Override
+    public boolean supportsResourceChannel() {
+        return true;
+    }
+
+    @Override
+    public SeekableByteChannel getResourceChannel(final ITransaction transaction,
+            final String uri) throws WebdavException {
+        LOG.trace("ContentAddressedStore.getResourceChannel(" + uri + ")");
+        try {
+            return FileChannel.open(blob(readReference(resolve(uri))),
+                    StandardOpenOption.READ);
+        } catch (final NoSuchFileException e) {
+            throw new ObjectNotFoundException(uri, e);
+        } catch (final IOException e) {
+            throw new WebdavException(e);
+        }
+    }
+
+    @Override
+    public long getResourceLength(final ITransaction transaction, final String uri)
+            throws WebdavException {
+        LOG.trace("ContentAddressedStore.getResourceLength(" + uri + ")");
+        try {
+            return Files.size(blob(readReference(resolve(uri))));
+        } catch (final IOException e) {
+            return 0L;
+        }
+    }
+
+    @Override
+    public StoredObject getStoredObject(final ITransaction transaction, final String uri) {
+        final Path path = resolve(uri);
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(path,
+                    BasicFileAttributes.class);
+            final StoredObject so = new StoredObject();
+            so.setFolder(attributes.isDirectory());
+            so.setLastModified(new Date(attributes.lastModifiedTime().toMillis()));
+            so.setCreationDate(new Date(attributes.creationTime().toMillis()));
+            if (!attributes.isDirectory()) {
+                final String hash = readReference(path);
+                so.setETag(hash);
+                so.setResourceLength(Files.size(blob(hash)));
+            }
+            return so;
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            return null;
+        } catch (final java.nio.file.AccessDeniedException e) {
+            throw new AccessDeniedException(e.getMessage(), e);
+        } catch (final IOException e) {
+            throw new WebdavException(e);
+        }
+    }
+
+    private Path resolve(final String uri) {
+        int start = 0;
+        while (start < uri.length() && uri.charAt(start) == '/') {
+            start++;
+        }
+        return start == uri.length() ? _tree : _tree.resolve(uri
+                .substring(start));
+    }
+
+    private Path blob(final String hash) {
+        return _blobs.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private Path referenceCount(final String hash) {
+        return _blobs.resolve(hash.substring(0, 2)).resolve(hash + ".refs");
+    }
+
+    private int pathStripe(final Path file) {
+        return (file.hashCode() & Integer.MAX_VALUE) % _pathLocks.length;
+    }
+
+    private Object pathLock(final Path file) {
+        return _pathLocks[pathStripe(file)];
+    }
+
+    private Object lock(final String hash) {
+        return _locks[Integer.parseInt(hash.substring(0, 2), 16) % _locks.length];
+    }
+
+    /**
+     * Adds a reference to a blob. If the blob does not exist yet, it is
+     * created from <code>staged</code>.
+     *
+     * @param staged
+     *      the content, moved into the blob store if needed, or
+     *      <code>null</code> if the blob is known to exist or the content is
+     *      empty
+     */
+    private void storeBlob(final Path staged, final String hash)
+            throws IOException {
+        final Path blob = blob(hash);
+        synchronized (lock(hash)) {
+            if (!Files.exists(blob)) {
+                Files.createDirectories(blob.getParent());
+                if (staged != null) {
+                    Files.move(staged, blob, StandardCopyOption.ATOMIC_MOVE);
+                } else if (hash.equals(_emptyHash)) {
+                    Files.createFile(blob);
+                } else {
+                    throw new NoSuchFileException(blob.toString());
+                }
+            }
+            writeCount(hash, readCount(hash) + 1);
+        }
+    }
+
+    /**
+     * Removes a reference to a blob, and the blob with its last reference.
+     */
+    private void releaseBlob(final String hash) throws IOException {
+        synchronized (lock(hash)) {
+            final long count = readCount(hash) - 1;
+            if (count > 0) {
+                writeCount(hash, count);
+            } else {
+                Files.deleteIfExists(referenceCount(hash));
+                Files.deleteIfExists(blob(hash));
+            }
+        }
+    }
+
+    private long readCount(final String hash) throws IOException {
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(referenceCount(hash)),
+                    StandardCharsets.US_ASCII).trim());
+        } catch (final NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    private void writeCount(final String hash, final long count)
+            throws IOException {
+        replace(referenceCount(hash), Long.toString(count));
+    }
+
+    private String readReference(final Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.US_ASCII)
+                .trim();
+    }
+
+    private void writeReference(final Path file, final String hash)
+            throws IOException {
+        replace(file, hash);
+    }
+
+    /**
+     * Replaces a small file atomically, so that it is never seen half written.
+     */
+    private void replace(final Path file, final String content)
+            throws IOException {
+        final Path staged = _temp.resolve(UUID.randomUUID().toString());
+        try {
+            Files.write(staged, content.getBytes(StandardCharsets.US_ASCII));
+            Files.move(staged, file, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.github.gv2011.webdav.exceptions.WebdavException;
+
+/**
+ * WebdavStore which caches the content of small resources of another store
+ * in direct (off-heap) buffers.
+ * <p>
+ * A cached content is only returned while the StoredObject of the resource
+ * has the same length, date of last modification and entity tag as when it
+ * was cached. It is looked up in the store behind for that check, which
+ * should therefore be a {@link CachingStore}, as set up by
+ * {@link WebdavServlet}, so that a cached content is served without a
+ * lookup in the backend. The content is returned as
+ * {@link ByteBufferInputStream} over the shared read-only buffer, or by
+ * {@link #getResourceBuffer}, which
+ * {@link com.github.gv2011.webdav.methods.DoGet} asks first, so that cached
+ * content is preferred to the channel of the store behind.
+ * <p>
+ * The cache is bounded by the total size of the contents. When it is full,
+ * a content is only admitted if it has been requested more often recently
+ * than the least recently used contents it would replace, so that a scan
+ * over many resources does not flush the frequently requested ones. The
+ * request frequencies are estimated by a small count-min sketch, which
+ * halves its counters periodically so that old requests are forgotten.
+ */
+public class ContentCachingStore extends DelegatingStore {
+
+    private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory
+            .getLogger(ContentCachingStore.class);
+
+    private static int BUF_SIZE = 65536;
+
+    private final long _maxObjectSize;
+    private final long _capacity;
+
+    private final LinkedHashMap<String, Content> _contents = new LinkedHashMap<>(
+            16, 0.75f, true);
+    private long _size;
+    private final FrequencySketch _frequencies = new FrequencySketch();
+
+    /**
+     * @param delegate
+     *      the store to cache
+     * @param maxObjectSize
+     *      resources larger than this are not cached
+     * @param capacity
+     *      maximum total size of all cached contents
+     */
+    public ContentCachingStore(final IWebdavStore delegate,
+            final long maxObjectSize, final long capacity) {
+        super(delegate);
+        // a single buffer can not exceed 2 GB
+        _maxObjectSize = Math.min(Math.min(maxObjectSize, capacity),
+                Integer.MAX_VALUE);
+        _capacity = capacity;
+    }
+
+    @Override
+    public InputStream getResourceContent(final ITransaction transaction,
+            final String resourceUri) {
+        final ByteBuffer buffer = getCachedContent(transaction, resourceUri);
+        return buffer == null ? super.getResourceContent(transaction,
+                resourceUri) : new ByteBufferInputStream(buffer);
+    }
+
+    @Override
+    public ByteBuffer getResourceBuffer(final ITransaction transaction,
+            final String resourceUri) {
+        final ByteBuffer buffer = getCachedContent(transaction, resourceUri);
+        return buffer == null ? super.getResourceBuffer(transaction,
+                resourceUri) : buffer;
+    }
+
+    /**
+     * Gets the content of a resource from the cache, loading it if it is
+     * admitted.
+     *
+     * @return a buffer over the content, <code>null</code> if it is not
+     *  cached
+     */
+    private ByteBuffer getCachedContent(final ITransaction transaction,
+            final String resourceUri) {
+        final String path = normalize(resourceUri);
+        final StoredObject so = getStoredObject(transaction, resourceUri);
+        if (so == null || so.isFolder() || so.isNullResource()
+                || so.getResourceLength() > _maxObjectSize) {
+            return null;
+        }
+        final int frequency;
+        synchronized (this) {
+            frequency = _frequencies.increment(path);
+            final Content content = _contents.get(path);
+            if (content != null && content.isCurrent(so)) {
+                return content._buffer.duplicate();
+            }
+            if (content != null) {
+                remove(path);
+            }
+            if (!canAdmit(so.getResourceLength(), frequency)) {
+                return null;
+            }
+        }
+        final ByteBuffer buffer = load(transaction, resourceUri, so);
+        if (buffer == null) {
+            return null;
+        }
+        synchronized (this) {
+            // others may have been admitted in the meantime
+            if (canAdmit(buffer.capacity(), frequency)) {
+                remove(path);
+                evict(buffer.capacity());
+                _contents.put(path, new Content(so, buffer));
+                _size += buffer.capacity();
+            }
+        }
+        return buffer.duplicate();
+    }
+
+    @Override
+    public void rollback(final ITransaction transaction) {
+        try {
+            super.rollback(transaction);
+        } finally {
+            clear();
+        }
+    }
+
+    @Override
+    public long setResourceContent(final ITransaction transaction,
+            final String resourceUri, final InputStream content,
+            final String contentType, final String characterEncoding) {
+        try {
+            return super.setResourceContent(transaction, resourceUri, content,
+                    contentType, characterEncoding);
+        } finally {
+            invalidate(resourceUri, false);
+        }
+    }
+
+    @Override
+    public long setResourceContent(final ITransaction transaction,
+            final String resourceUri, final InputStream content,
+            final String contentType, final String characterEncoding,
+            final long contentLength) {
+        try {
+            return super.setResourceContent(transaction, resourceUri, content,
+                    contentType, characterEncoding, contentLength);
+        } finally {
+            invalidate(resourceUri, false);
+        }
+    }
+
+    @Override
+    public ResourceWriter openResourceWriter(final ITransaction transaction,
+            final String resourceUri, final String contentType,
+            final String characterEncoding, final long contentLength) {
+        return onFinish(super.openResourceWriter(transaction, resourceUri,
+                contentType, characterEncoding, contentLength),
+                () -> invalidate(resourceUri, false));
+    }
+
+    @Override
+    public void removeObject(final ITransaction transaction, final String uri) {
+        try {
+            super.removeObject(transaction, uri);
+        } finally {
+            invalidate(uri, false);
+        }
+    }
+
+    @Override
+    public void removeTree(final ITransaction transaction, final String folderUri,
+            final Map<String, WebdavException> failures) {
+        try {
+            super.removeTree(transaction, folderUri, failures);
+        } finally {
+            invalidate(folderUri, true);
+        }
+    }
+
+    @Override
+    public boolean moveObject(final ITransaction transaction,
+            final String sourceUri, final String destinationUri) {
+        try {
+            return super.moveObject(transaction, sourceUri, destinationUri);
+        } finally {
+            invalidate(sourceUri, true);
+        }
+    }
+
+    /**
+     * Removes all contents from the cache.
+     */
+    public synchronized void clear() {
+        _contents.clear();
+        _size = 0;
+    }
+
+    /**
+     * @return the total size of the cached contents
+     */
+    public synchronized long getSize() {
+        return _size;
+    }
+
+    /**
+     * Reads the content of a resource into a direct buffer.
+     *
+     * @return the content, or <code>null</code> if its length does not match
+     *  the StoredObject
+     */
+    private ByteBuffer load(final ITransaction transaction,
+            final String resourceUri, final StoredObject so) {
+        LOG.trace("ContentCachingStore.load(" + resourceUri + ")");
+        final ByteBuffer buffer = ByteBuffer.allocateDirect((int) so
+                .getResourceLength());
+        try (InputStream in = super.getResourceContent(transaction, resourceUri)) {
+            final byte[] copyBuffer = new byte[Math.min(BUF_SIZE,
+                    buffer.capacity() + 1)];
+            int read;
+            while ((read = in.read(copyBuffer)) != -1) {
+                if (read > buffer.remaining()) {
+                    return null;
+                }
+                buffer.put(copyBuffer, 0, read);
+            }
+        } catch (final IOException e) {
+            throw new WebdavException(e);
+        }
+        if (buffer.hasRemaining()) {
+            return null;
+        }
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Tells whether a content fits into the cache, either in free space or
+     * by evicting contents which have been requested less frequently.
+     */
+    private boolean canAdmit(final long size, final int frequency) {
+        long free = _capacity - _size;
+        final Iterator<Map.Entry<String, Content>> eldest = _contents
+                .entrySet().iterator();
+        while (free < size) {
+            final Map.Entry<String, Content> victim = eldest.next();
+            if (_frequencies.get(victim.getKey()) >= frequency) {
+                return false;
+            }
+            free += victim.getValue()._buffer.capacity();
+        }
+        return true;
+    }
+
+    private void evict(final long size) {
+        final Iterator<Content> eldest = _contents.values().iterator();
+        while (_capacity - _size < size) {
+            _size -= eldest.next()._buffer.capacity();
+            eldest.remove();
+        }
+    }
+
+    private synchronized void invalidate(final String uri, final boolean subtree) {
+        final String path = normalize(uri);
+        remove(path);
+        if (subtree) {
+            final String prefix = path.equals("/") ? path : path + "/";
+            final Iterator<Map.Entry<String, Content>> contents = _contents
+                    .entrySet().iterator();
+            while (contents.hasNext()) {
+                final Map.Entry<String, Content> content = contents.next();
+                if (content.getKey().startsWith(prefix)) {
+                    _size -= content.getValue()._buffer.capacity();
+                    contents.remove();
+                }
+            }
+        }
+    }
+
+    private void remove(final String path) {
+        final Content content = _contents.remove(path);
+        if (content != null) {
+            _size -= content._buffer.capacity();
+        }
+    }
+
+    private static final class Content {
+
+        private final long _lastModified;
+        private final String _eTag;
+        private final ByteBuffer _buffer;
+
+        private Content(final StoredObject so, final ByteBuffer buffer) {
+            _lastModified = so.getLastModified() == null ? -1 : so
+                    .getLastModified().getTime();
+            _eTag = so.getETag();
+            _buffer = buffer;
+        }
+
+        private boolean isCurrent(final StoredObject so) {
+            return so.getLastModified() != null
+                    && _lastModified == so.getLastModified().getTime()
+                    && _buffer.capacity() == so.getResourceLength()
+                    && Objects.equals(_eTag, so.getETag());
+        }
+    }
+
+    /**
+     * Count-min sketch of request frequencies with 4 bit counters.
+     */
+    private static final class FrequencySketch {
+
+        private static final int DEPTH = 4;
+        private static final int WIDTH = 4096;
+        private static final int MAX_COUNT = 15;
+        private static final int SAMPLE_SIZE = 10 * WIDTH;
+
+        private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B,
+                0xC2B2AE35, 0x27D4EB2F };
+
+        private final byte[][] _counters = new byte[DEPTH][WIDTH];
+        private int _increments;
+
+        private int get(final String key) {
+            int count = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                count = Math.min(count, _counters[i][index(key, i)]);
+            }
+            return count;
+        }
+
+        /**
+         * @return the frequency including this request
+         */
+        private int increment(final String key) {
+            final int count = get(key);
+            if (count < MAX_COUNT) {
+                for (int i = 0; i < DEPTH; i++) {
+                    final int index = index(key, i);
+                    // conservative update: only raise the smallest counters
+                    if (_counters[i][index] == count) {
+                        _counters[i][index]++;
+                    }
+                }
+            }
+            if (++_increments == SAMPLE_SIZE) {
+                for (final byte[] row : _counters) {
+                    for (int j = 0; j < WIDTH; j++) {
+                        row[j] >>= 1;
+                    }
+                }
+                _increments = 0;
+            }
+            return Math.min(count + 1, MAX_COUNT);
+        }
+
+        private static int index(final String key, final int row) {
+            int hash = key.hashCode() * SEEDS[row];
+            hash ^= hash >>> 16;
+            return hash & (WIDTH - 1);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.security.Principal;
+import java.util.Map;
+
+import com.github.gv2011.webdav.exceptions.WebdavException;
+
+/**
+ * WebdavStore which passes every call on to another store. Base class for
+ * stores which add behaviour, e.g. caching, to any backend.
+ */
+public class DelegatingStore implements IWebdavStore {
+
+    private final IWebdavStore _delegate;
+
+    public DelegatingStore(final IWebdavStore delegate) {
+        _delegate = delegate;
+    }
+
+    /**
+     * @return the store calls are passed on to
+     */
+    public IWebdavStore getDelegate() {
+        return _delegate;
+    }
+
+    @Override
+    public void destroy() {
+        _delegate.destroy();
+    }
+
+    @Override
+    public ITransaction begin(final Principal principal) {
+        return _delegate.begin(principal);
+    }
+
+    @Override
+    public void checkAuthentication(final ITransaction transaction) {
+        _delegate.checkAuthentication(transaction);
+    }
+
+    @Override
+    public void commit(final ITransaction transaction) {
+        _delegate.commit(transaction);
+    }
+
+    @Override
+    public void rollback(final ITransaction transaction) {
+        _delegate.rollback(transaction);
+    }
+
+    @Override
+    public void createFolder(final ITransaction transaction, final String folderUri) {
+        _delegate.createFolder(transaction, folderUri);
+    }
+
+    @Override
+    public void createResource(final ITransaction transaction, final String resourceUri) {
+        _delegate.createResource(transaction, resourceUri);
+    }
+
+    @Override
+    public InputStream getResourceContent(final ITransaction transaction,
+            final String resourceUri) {
+        return _delegate.getResourceContent(transaction, resourceUri);
+    }
+
+    @Override
+    public ByteBuffer getResourceBuffer(final ITransaction transaction,
+            final String resourceUri) {
+        return _delegate.getResourceBuffer(transaction, resourceUri);
+    }
+
+    @Override
+    public boolean supportsResourceChannel() {
+        return _delegate.supportsResourceChannel();
+    }
+
+    @Override
+    public SeekableByteChannel getResourceChannel(final ITransaction transaction,
+            final String resourceUri) {
+        return _delegate.getResourceChannel(transaction, resourceUri);
+    }
+
+    @Override
+    public long setResourceContent(final ITransaction transaction,
+            final String resourceUri, final InputStream content,
+            final String contentType, final String characterEncoding) {
+        return _delegate.setResourceContent(transaction, resourceUri, content,
+                contentType, characterEncoding);
+    }
+
+    @Override
+    public long setResourceContent(final ITransaction transaction,
+            final String resourceUri, final InputStream content,
+            final String contentType, final String characterEncoding,
+            final long contentLength) {
+        return _delegate.setResourceContent(transaction, resourceUri, content,
+                contentType, characterEncoding, contentLength);
+    }
+
+    @Override
+    public boolean supportsResourceWriter() {
+        return _delegate.supportsResourceWriter();
+    }
+
+    @Override
+    public ResourceWriter openResourceWriter(final ITransaction transaction,
+            final String resourceUri, final String contentType,
+            final String characterEncoding, final long contentLength) {
+        return _delegate.openResourceWriter(transaction, resourceUri,
+                contentType, characterEncoding, contentLength);
+    }
+
+    @Override
+    public String[] getChildrenNames(final ITransaction transaction, final String folderUri) {
+        return _delegate.getChildrenNames(transaction, folderUri);
+    }
+
+    @Override
+    public Map<String, StoredObject> getChildren(final ITransaction transaction,
+            final String folderUri) {
+        return _delegate.getChildren(transaction, folderUri);
+    }
+
+    @Override
+    public long getResourceLength(final ITransaction transaction, final String path) {
+        return _delegate.getResourceLength(transaction, path);
+    }
+
+    @Override
+    public void removeObject(final ITransaction transaction, final String uri) {
+        _delegate.removeObject(transaction, uri);
+    }
+
+    @Override
+    public void removeTree(final ITransaction transaction, final String folderUri,
+            final Map<String, WebdavException> failures) {
+        _delegate.removeTree(transaction, folderUri, failures);
+    }
+
+    @Override
+    public boolean moveObject(final ITransaction transaction,
+            final String sourceUri, final String destinationUri) {
+        return _delegate.moveObject(transaction, sourceUri, destinationUri);
+    }
+
+    @Override
+    public boolean copyObject(final ITransaction transaction,
+            final String sourceUri, final String destinationUri) {
+        return _delegate.copyObject(transaction, sourceUri, destinationUri);
+    }
+
+    @Override
+    public StoredObject getStoredObject(final ITransaction transaction, final String uri) {
+        return _delegate.getStoredObject(transaction, uri);
+    }
+
+    /**
+     * Wraps a writer so that <code>finished</code> runs after
+     * {@link ResourceWriter#finish()}, e.g. to invalidate cached data.
+     *
+     * @param writer
+     *      the writer of the store behind
+     * @param finished
+     *      run after the writer finished, even if that failed
+     * @return the wrapped writer
+     */
+    protected static ResourceWriter onFinish(final ResourceWriter writer,
+            final Runnable finished) {
+        return new ResourceWriter() {
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) {
+                writer.write(b, off, len);
+            }
+
+            @Override
+            public long finish() {
+                try {
+                    return writer.finish();
+                } finally {
+                    finished.run();
+                }
+            }
+
+            @Override
+            public void abort() {
+                writer.abort();
+            }
+        };
+    }
+
+    /**
+     * Brings an URI into the form used as key by caching stores: with a
+     * leading and without a trailing slash, "/" for the root. Repeated
+     * slashes, as in paths built by appending "/" + name to a folder URI
+     * ending with a slash, are collapsed.
+     *
+     * @param uri
+     *      the URI
+     * @return the normalized URI
+     */
+    protected static String normalize(final String uri) {
+        final StringBuilder path = new StringBuilder(uri.length() + 1);
+        path.append('/');
+        for (int i = 0; i < uri.length(); i++) {
+            final char c = uri.charAt(i);
+            if (c != '/' || path.charAt(path.length() - 1) != '/') {
+                path.append(c);
+            }
+        }
+        if (path.length() > 1 && path.charAt(path.length() - 1) == '/') {
+            path.setLength(path.length() - 1);
+        }
+        return path.toString();
+    }
+}
@@ -24,7 +24,11 @@
 package com.github.gv2011.webdav;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import com.github.gv2011.webdav.exceptions.WebdavException;
 
@@ -137,6 +141,65 @@ public interface IWebdavStore {
      */
     InputStream getResourceContent(ITransaction transaction, String resourceUri);
 
+    /**
+     * Tells whether {@link #getResourceChannel} is implemented by this store.
+     *
+     * @return <code>true</code> if the content of resources can be read
+     *  through a channel
+     */
+    default boolean supportsResourceChannel() {
+        return false;
+    }
+
+    /**
+     * Gets a channel for reading the content of the resource specified by
+     * <code>resourceUri</code>. Unlike {@link #getResourceContent}, the
+     * channel allows positional access, so callers can read parts of the
+     * content without reading it from the start. The caller has to close the
+     * channel.
+     * <p>
+     * This is optional, callers must check {@link #supportsResourceChannel()}
+     * first. The default implementation throws a {@link WebdavException}.
+     *
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param resourceUri
+     *      URI of the content resource
+     * @return a readable channel positioned at the start of the content,
+     *  usually a {@link java.nio.channels.FileChannel} for file based stores
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    default SeekableByteChannel getResourceChannel(ITransaction transaction,
+            String resourceUri) {
+        throw new WebdavException("channel access is not supported: "
+                + resourceUri);
+    }
+
+    /**
+     * Gets the content of the resource specified by <code>resourceUri</code>
+     * if the store holds it in memory, e.g. in a cache or a memory mapping.
+     * Callers should prefer it to {@link #getResourceChannel} and
+     * {@link #getResourceContent}, so that decorating stores can serve
+     * content themselves. The default implementation returns
+     * <code>null</code>.
+     *
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param resourceUri
+     *      URI of the content resource
+     * @return a read-only buffer over the whole content, which the caller may
+     *  consume, or <code>null</code> if the content is not held in memory
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    default ByteBuffer getResourceBuffer(ITransaction transaction,
+            String resourceUri) {
+        return null;
+    }
+
     /**
      * Sets / stores the content of the resource specified by
      * <code>resourceUri</code>.
@@ -160,6 +223,85 @@ public interface IWebdavStore {
     long setResourceContent(ITransaction transaction, String resourceUri,
             InputStream content, String contentType, String characterEncoding);
 
+    /**
+     * Sets / stores the content of the resource specified by
+     * <code>resourceUri</code>, like
+     * {@link #setResourceContent(ITransaction, String, InputStream, String, String)},
+     * with a hint how long the content will be. Stores may use the hint to
+     * allocate space up front. The content may still be shorter or longer.
+     * <p>
+     * The default implementation ignores the hint, and so do the stores of
+     * this package.
+     *
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param resourceUri
+     *      URI of the resource where the content will be stored
+     * @param content
+     *      input stream from which the content will be read from
+     * @param contentType
+     *      content type of the resource or <code>null</code> if unknown
+     * @param characterEncoding
+     *      character encoding of the resource or <code>null</code> if unknown
+     *      or not applicable
+     * @param contentLength
+     *      expected length of the content in bytes, <code>-1</code> if unknown
+     * @return lenght of resource
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    default long setResourceContent(ITransaction transaction,
+            String resourceUri, InputStream content, String contentType,
+            String characterEncoding, long contentLength) {
+        return setResourceContent(transaction, resourceUri, content,
+                contentType, characterEncoding);
+    }
+
+    /**
+     * Tells whether {@link #openResourceWriter} is implemented by this store.
+     *
+     * @return <code>true</code> if the content of resources can be written
+     *  piece by piece
+     */
+    default boolean supportsResourceWriter() {
+        return false;
+    }
+
+    /**
+     * Opens a writer for the content of the resource specified by
+     * <code>resourceUri</code>. Unlike {@link #setResourceContent}, the caller
+     * pushes the content as it arrives, so no thread has to wait for it, e.g.
+     * for a slow upload.
+     * <p>
+     * This is optional, callers must check {@link #supportsResourceWriter()}
+     * first. The default implementation throws a {@link WebdavException}.
+     *
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param resourceUri
+     *      URI of the resource where the content will be stored
+     * @param contentType
+     *      content type of the resource or <code>null</code> if unknown
+     * @param characterEncoding
+     *      character encoding of the resource or <code>null</code> if unknown
+     *      or not applicable
+     * @param contentLength
+     *      expected length of the content in bytes, <code>-1</code> if
+     *      unknown; a hint like for
+     *      {@link #setResourceContent(ITransaction, String, InputStream, String, String, long)}
+     * @return the writer, which has to be finished or aborted
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    default ResourceWriter openResourceWriter(ITransaction transaction,
+            String resourceUri, String contentType, String characterEncoding,
+            long contentLength) {
+        throw new WebdavException("incremental writes are not supported: "
+                + resourceUri);
+    }
+
     /**
      * Gets the names of the children of the folder specified by
      * <code>folderUri</code>.
@@ -176,6 +318,40 @@ public interface IWebdavStore {
      */
     String[] getChildrenNames(ITransaction transaction, String folderUri);
 
+    /**
+     * Gets the children of the folder specified by <code>folderUri</code>
+     * together with their metadata. Stores that can read names and metadata
+     * in one pass should override this; the default implementation calls
+     * {@link #getChildrenNames(ITransaction, String)} and then
+     * {@link #getStoredObject(ITransaction, String)} for every child.
+     * 
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param folderUri
+     *      URI of the folder
+     * @return a (possibly empty) map from child name to StoredObject in the
+     *  order of {@link #getChildrenNames(ITransaction, String)}, or
+     *  <code>null</code> if the uri points to a file. A child that vanished
+     *  while listing may be mapped to <code>null</code>.
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    default Map<String, StoredObject> getChildren(ITransaction transaction,
+            String folderUri) {
+        final String[] names = getChildrenNames(transaction, folderUri);
+        if (names == null) {
+            return null;
+        }
+        final String prefix = folderUri.endsWith("/") ? folderUri
+                : folderUri + "/";
+        final Map<String, StoredObject> children = new LinkedHashMap<>();
+        for (final String name : names) {
+            children.put(name, getStoredObject(transaction, prefix + name));
+        }
+        return children;
+    }
+
     /**
      * Gets the length of the content resource specified by
      * <code>resourceUri</code>.
@@ -206,6 +382,110 @@ public interface IWebdavStore {
      */
     void removeObject(ITransaction transaction, String uri);
 
+    /**
+     * Removes the folder specified by <code>folderUri</code> together with
+     * all of its content.
+     * <p>
+     * Members which can not be removed are put into <code>failures</code>
+     * and do not stop the removal of their siblings. Folders that still
+     * contain such a member are kept and not reported themselves. A failure to
+     * remove the folder at <code>folderUri</code> is thrown.
+     * <p>
+     * The default implementation walks the tree with
+     * {@link #getChildrenNames}, {@link #getStoredObject} and
+     * {@link #removeObject}. Stores which can remove a tree more efficiently
+     * should override it.
+     *
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param folderUri
+     *      URI of the folder
+     * @param failures
+     *      receives the URIs of all members that could not be removed
+     * @throws WebdavException
+     *      if the folder itself can not be removed
+     */
+    default void removeTree(ITransaction transaction, String folderUri,
+            Map<String, WebdavException> failures) {
+        final int failuresBefore = failures.size();
+        final String[] names = getChildrenNames(transaction, folderUri);
+        if (names != null) {
+            final String prefix = folderUri.endsWith("/") ? folderUri
+                    : folderUri + "/";
+            for (final String name : names) {
+                final String childUri = prefix + name;
+                try {
+                    final StoredObject so = getStoredObject(transaction,
+                            childUri);
+                    if (so != null && so.isFolder()) {
+                        removeTree(transaction, childUri, failures);
+                    } else if (so != null) {
+                        removeObject(transaction, childUri);
+                    }
+                } catch (final WebdavException e) {
+                    failures.put(childUri, e);
+                }
+            }
+        }
+        if (failures.size() == failuresBefore) {
+            removeObject(transaction, folderUri);
+        }
+    }
+
+    /**
+     * Moves the object specified by <code>sourceUri</code>, including all of
+     * its children, to <code>destinationUri</code> in a single store
+     * operation, e.g. a rename. The destination does not exist when this
+     * method is called.
+     * <p>
+     * This is optional: the default implementation returns <code>false</code>
+     * and the caller falls back to copying and removing the object.
+     * 
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param sourceUri
+     *      URI of the object, i.e. content resource or folder
+     * @param destinationUri
+     *      new URI of the object
+     * @return <code>true</code> if the object has been moved,
+     *  <code>false</code> if the store can not move it natively
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    default boolean moveObject(ITransaction transaction, String sourceUri,
+            String destinationUri) {
+        return false;
+    }
+
+    /**
+     * Copies the content resource specified by <code>sourceUri</code> to
+     * <code>destinationUri</code> within the store, without streaming the
+     * content through the caller. The destination does not exist when this
+     * method is called.
+     * <p>
+     * This is optional: the default implementation returns <code>false</code>
+     * and the caller falls back to {@link #createResource} and
+     * {@link #setResourceContent} with the content of the source.
+     *
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param sourceUri
+     *      URI of the content resource
+     * @param destinationUri
+     *      URI of the copy
+     * @return <code>true</code> if the resource has been copied,
+     *  <code>false</code> if the store can not copy it natively
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    default boolean copyObject(ITransaction transaction, String sourceUri,
+            String destinationUri) {
+        return false;
+    }
+
     /**
      * Gets the storedObject specified by <code>uri</code>
      * 
@@ -18,20 +18,48 @@ package com.github.gv2011.webdav;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.gv2011.webdav.exceptions.AccessDeniedException;
+import com.github.gv2011.webdav.exceptions.ObjectNotFoundException;
 import com.github.gv2011.webdav.exceptions.WebdavException;
 
 /**
  * Reference Implementation of WebdavStore
+ * <p>
+ * Backed by the NIO.2 file system API. Metadata is read with a single
+ * {@link Files#readAttributes(Path, Class, java.nio.file.LinkOption...)} call
+ * per object instead of one stat call per attribute.
  *
  * @author joa
  * @author re
@@ -43,25 +71,119 @@ public class LocalFileSystemStore implements IWebdavStore {
 
     private static int BUF_SIZE = 65536;
 
-    private File _root = null;
+    /**
+     * Name prefix of the temporary files staged writes go to. Such files are
+     * not listed as children of their folder.
+     */
+    private static final String STAGING_PREFIX = ".~webdav-put-";
+
+    private final Path _root;
+
+    private volatile ForkJoinPool _removePool;
+
+    private volatile ForkJoinPool _listPool;
+
+    private volatile boolean _stagedWrites;
+
+    private volatile MappedContentCache _mappedContent;
 
     public LocalFileSystemStore(final File root) {
+        this(root.toPath());
+    }
+
+    public LocalFileSystemStore(final Path root) {
         _root = root;
     }
 
+    /**
+     * Lets {@link #removeTree} remove the folders of a tree concurrently on a
+     * pool of <code>parallelism</code> threads. With a parallelism of 1 or
+     * less, trees are removed on the calling thread, which is the default.
+     *
+     * @param parallelism
+     *      the maximum number of threads removing one or more trees
+     */
+    public void setRemoveParallelism(final int parallelism) {
+        final ForkJoinPool previous = _removePool;
+        _removePool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * Lets {@link #getChildren} read the attributes of the children of a
+     * folder concurrently on a pool of <code>parallelism</code> threads, which
+     * pays off where every read is a round trip, e.g. on NFS or SMB mounts.
+     * The children keep the order of the listing. With a parallelism of 1 or
+     * less, attributes are read on the calling thread, which is the default.
+     *
+     * @param parallelism
+     *      the maximum number of threads reading attributes
+     */
+    public void setListParallelism(final int parallelism) {
+        final ForkJoinPool previous = _listPool;
+        _listPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * Lets {@link #setResourceContent} write into a temporary file in the
+     * same folder and replace the resource with it by an atomic rename once
+     * all content has been written and synced to disk. Concurrent readers
+     * then see either the old or the new content but never a partially
+     * written file, and an aborted upload leaves the old content in place.
+     * Disabled by default.
+     *
+     * @param stagedWrites
+     *      <code>true</code> to enable staged writes
+     */
+    public void setStagedWrites(final boolean stagedWrites) {
+        _stagedWrites = stagedWrites;
+    }
+
+    /**
+     * Lets {@link #getResourceContent} serve files of up to
+     * <code>maxFileSize</code> bytes from memory mapped buffers. The mappings
+     * are kept in a least recently used cache of at most
+     * <code>cacheSize</code> bytes and reused until the file changes. With a
+     * maximum file size or cache size of 0 or less, mapped reads are disabled,
+     * which is the default.
+     * <p>
+     * Truncating a file in place while it is read from a mapping makes the
+     * reading thread fail. Mapped reads should therefore be combined with
+     * {@link #setStagedWrites(boolean) staged writes}, and the files should
+     * not be modified in place by other processes.
+     *
+     * @param maxFileSize
+     *      files larger than this are read as a stream
+     * @param cacheSize
+     *      maximum total size of all cached mappings
+     */
+    public void setMappedReads(final long maxFileSize, final long cacheSize) {
+        _mappedContent = maxFileSize > 0 && cacheSize > 0 ? new MappedContentCache(
+                maxFileSize, cacheSize) : null;
+    }
+
     @Override
     public void destroy() {
-        ;
+        setRemoveParallelism(0);
+        setListParallelism(0);
+        setMappedReads(0, 0);
     }
 
     @Override
     public ITransaction begin(final Principal principal) throws WebdavException {
         LOG.trace("LocalFileSystemStore.begin()");
-        if (!_root.exists()) {
-            if (!_root.mkdirs()) {
+        if (!Files.isDirectory(_root)) {
+            try {
+                Files.createDirectories(_root);
+            } catch (final IOException e) {
                 throw new WebdavException("root path: "
-                        + _root.getAbsolutePath()
-                        + " does not exist and could not be created");
+                        + _root.toAbsolutePath()
+                        + " does not exist and could not be created", e);
             }
         }
         return null;
@@ -92,24 +214,24 @@ public class LocalFileSystemStore implements IWebdavStore {
     public void createFolder(final ITransaction transaction, final String uri)
             throws WebdavException {
         LOG.trace("LocalFileSystemStore.createFolder(" + uri + ")");
-        final File file = new File(_root, uri);
-        if (!file.mkdir())
-            throw new WebdavException("cannot create folder: " + uri);
+        try {
+            Files.createDirectory(resolve(uri));
+        } catch (final IOException e) {
+            throw new WebdavException("cannot create folder: " + uri, e);
+        }
     }
 
     @Override
     public void createResource(final ITransaction transaction, final String uri)
             throws WebdavException {
         LOG.trace("LocalFileSystemStore.createResource(" + uri + ")");
-        final File file = new File(_root, uri);
         try {
-            if (!file.createNewFile())
-                throw new WebdavException("cannot create file: " + uri);
+            Files.createFile(resolve(uri));
         } catch (final IOException e) {
             LOG
                     .error("LocalFileSystemStore.createResource(" + uri
                             + ") failed");
-            throw new WebdavException(e);
+            throw new WebdavException("cannot create file: " + uri, e);
         }
     }
 
@@ -117,25 +239,33 @@ public class LocalFileSystemStore implements IWebdavStore {
     public long setResourceContent(final ITransaction transaction, final String uri,
             final InputStream is, final String contentType, final String characterEncoding)
             throws WebdavException {
+        return setResourceContent(transaction, uri, is, contentType,
+                characterEncoding, -1);
+    }
 
-        LOG.trace("LocalFileSystemStore.setResourceContent(" + uri + ")");
-        final File file = new File(_root, uri);
+    @Override
+    public long setResourceContent(final ITransaction transaction, final String uri,
+            final InputStream is, final String contentType,
+            final String characterEncoding, final long contentLength)
+            throws WebdavException {
+
+        LOG.trace("LocalFileSystemStore.setResourceContent(" + uri + ", "
+                + contentLength + ")");
+        final Path file = resolve(uri);
         try {
-            final OutputStream os = new BufferedOutputStream(new FileOutputStream(
-                    file), BUF_SIZE);
             try {
-                int read;
-                final byte[] copyBuffer = new byte[BUF_SIZE];
-
-                while ((read = is.read(copyBuffer, 0, copyBuffer.length)) != -1) {
-                    os.write(copyBuffer, 0, read);
+                if (_stagedWrites) {
+                    writeStaged(file, is);
+                } else {
+                    try (FileChannel channel = FileChannel.open(file,
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING,
+                            StandardOpenOption.WRITE)) {
+                        write(channel, is);
+                    }
                 }
             } finally {
-                try {
-                    is.close();
-                } finally {
-                    os.close();
-                }
+                is.close();
             }
         } catch (final IOException e) {
             LOG.error("LocalFileSystemStore.setResourceContent(" + uri
@@ -145,8 +275,8 @@ public class LocalFileSystemStore implements IWebdavStore {
         long length = -1;
 
         try {
-            length = file.length();
-        } catch (final SecurityException e) {
+            length = Files.size(file);
+        } catch (final IOException | SecurityException e) {
             LOG.error("LocalFileSystemStore.setResourceContent(" + uri
                     + ") failed" + "\nCan't get file.length");
         }
@@ -158,44 +288,158 @@ public class LocalFileSystemStore implements IWebdavStore {
     public String[] getChildrenNames(final ITransaction transaction, final String uri)
             throws WebdavException {
         LOG.trace("LocalFileSystemStore.getChildrenNames(" + uri + ")");
-        final File file = new File(_root, uri);
-        String[] childrenNames = null;
-        if (file.isDirectory()) {
-            final File[] children = file.listFiles();
-            final List<String> childList = new ArrayList<>();
-            String name = null;
-            for (int i = 0; i < children.length; i++) {
-                name = children[i].getName();
+        final Path folder = resolve(uri);
+        if (!Files.isDirectory(folder)) {
+            return null;
+        }
+        final List<String> childList = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(folder)) {
+            for (final Path child : children) {
+                final String name = child.getFileName().toString();
+                if (name.startsWith(STAGING_PREFIX)) {
+                    continue;
+                }
+                LOG.trace("Child " + childList.size() + ": " + name);
                 childList.add(name);
-                LOG.trace("Child " + i + ": " + name);
             }
-            childrenNames = new String[childList.size()];
-            childrenNames = childList.toArray(childrenNames);
+        } catch (final IOException e) {
+            throw new WebdavException("cannot list folder: " + uri, e);
         }
-        return childrenNames;
+        return childList.toArray(new String[childList.size()]);
+    }
+
+    @Override
+    public Map<String, StoredObject> getChildren(final ITransaction transaction,
+            final String uri) throws WebdavException {
+        LOG.trace("LocalFileSystemStore.getChildren(" + uri + ")");
+        final List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(resolve(uri))) {
+            for (final Path child : stream) {
+                if (!child.getFileName().toString().startsWith(STAGING_PREFIX)) {
+                    paths.add(child);
+                }
+            }
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            return null;
+        } catch (final IOException e) {
+            throw new WebdavException("cannot list folder: " + uri, e);
+        }
+        final BasicFileAttributes[] attributes = new BasicFileAttributes[paths
+                .size()];
+        final ForkJoinPool pool = _listPool;
+        if (pool == null || paths.size() <= AttributesTask.BATCH_SIZE) {
+            for (int i = 0; i < attributes.length; i++) {
+                attributes[i] = readAttributes(paths.get(i));
+            }
+        } else {
+            pool.invoke(new AttributesTask(paths, attributes, 0,
+                    attributes.length));
+        }
+        final Map<String, StoredObject> children = new LinkedHashMap<>();
+        for (int i = 0; i < attributes.length; i++) {
+            // children deleted since listing are left out
+            if (attributes[i] != null) {
+                children.put(paths.get(i).getFileName().toString(),
+                        toStoredObject(attributes[i]));
+            }
+        }
+        return children;
     }
 
     @Override
     public void removeObject(final ITransaction transaction, final String uri)
             throws WebdavException {
-        final File file = new File(_root, uri);
-        final boolean success = file.delete();
-        LOG.trace("LocalFileSystemStore.removeObject(" + uri + ")=" + success);
-        if (!success) {
-            throw new WebdavException("cannot delete object: " + uri);
+        try {
+            Files.delete(resolve(uri));
+            LOG.trace("LocalFileSystemStore.removeObject(" + uri + ")=true");
+        } catch (final IOException e) {
+            LOG.trace("LocalFileSystemStore.removeObject(" + uri + ")=false");
+            throw new WebdavException("cannot delete object: " + uri, e);
         }
 
     }
 
+    @Override
+    public void removeTree(final ITransaction transaction, final String folderUri,
+            final Map<String, WebdavException> failures) throws WebdavException {
+        LOG.trace("LocalFileSystemStore.removeTree(" + folderUri + ")");
+        final Path folder = resolve(folderUri);
+        final ForkJoinPool pool = _removePool;
+        final Map<Path, IOException> failed;
+        if (pool == null) {
+            failed = new LinkedHashMap<>();
+            walkAndRemove(folder, failed);
+        } else {
+            failed = new ConcurrentHashMap<>();
+            pool.invoke(new RemoveTask(folder, failed));
+        }
+        final IOException folderFailure = failed.remove(folder);
+        for (final Map.Entry<Path, IOException> failure : failed.entrySet()) {
+            final String uri = toUri(folderUri, folder, failure.getKey());
+            LOG.trace("LocalFileSystemStore.removeTree(" + folderUri
+                    + ") cannot delete " + uri);
+            failures.put(uri, toDeleteException(uri, failure.getValue()));
+        }
+        if (folderFailure != null) {
+            throw toDeleteException(folderUri, folderFailure);
+        }
+    }
+
+    @Override
+    public boolean moveObject(final ITransaction transaction, final String sourceUri,
+            final String destinationUri) throws WebdavException {
+        LOG.trace("LocalFileSystemStore.moveObject(" + sourceUri + ", "
+                + destinationUri + ")");
+        try {
+            Files.move(resolve(sourceUri), resolve(destinationUri),
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (final AtomicMoveNotSupportedException e) {
+            // e.g. source and destination are on different file systems
+            LOG.trace("LocalFileSystemStore.moveObject(" + sourceUri
+                    + ") can not rename: " + e.getMessage());
+            return false;
+        } catch (final IOException e) {
+            throw new WebdavException("cannot move object: " + sourceUri, e);
+        }
+    }
+
+    @Override
+    public boolean copyObject(final ITransaction transaction, final String sourceUri,
+            final String destinationUri) throws WebdavException {
+        LOG.trace("LocalFileSystemStore.copyObject(" + sourceUri + ", "
+                + destinationUri + ")");
+        try {
+            // lets the platform copy in the kernel (copy_file_range, reflinks)
+            Files.copy(resolve(sourceUri), resolve(destinationUri));
+            return true;
+        } catch (final java.nio.file.AccessDeniedException e) {
+            throw new AccessDeniedException(e.getMessage(), e);
+        } catch (final IOException e) {
+            throw new WebdavException("cannot copy object: " + sourceUri, e);
+        }
+    }
+
     @Override
     public InputStream getResourceContent(final ITransaction transaction, final String uri)
             throws WebdavException {
         LOG.trace("LocalFileSystemStore.getResourceContent(" + uri + ")");
-        final File file = new File(_root, uri);
 
+        final Path file = resolve(uri);
+        final MappedContentCache mappedContent = _mappedContent;
         InputStream in;
         try {
-            in = new BufferedInputStream(new FileInputStream(file));
+            if (mappedContent != null) {
+                final BasicFileAttributes attributes = readAttributes(file);
+                if (attributes != null && attributes.isRegularFile()) {
+                    final ByteBuffer content = mappedContent.get(file,
+                            attributes);
+                    if (content != null) {
+                        return new ByteBufferInputStream(content);
+                    }
+                }
+            }
+            in = new BufferedInputStream(Files.newInputStream(file));
         } catch (final IOException e) {
             LOG.error("LocalFileSystemStore.getResourceContent(" + uri
                     + ") failed");
@@ -204,29 +448,420 @@ public class LocalFileSystemStore implements IWebdavStore {
         return in;
     }
 
+    @Override
+    public ByteBuffer getResourceBuffer(final ITransaction transaction,
+            final String uri) throws WebdavException {
+        final MappedContentCache mappedContent = _mappedContent;
+        if (mappedContent == null) {
+            return null;
+        }
+        final Path file = resolve(uri);
+        try {
+            final BasicFileAttributes attributes = readAttributes(file);
+            if (attributes == null || !attributes.isRegularFile()) {
+                return null;
+            }
+            return mappedContent.get(file, attributes);
+        } catch (final IOException e) {
+            LOG.error("LocalFileSystemStore.getResourceBuffer(" + uri
+                    + ") failed");
+            throw new WebdavException(e);
+        }
+    }
+
+    @Override
+    public boolean supportsResourceChannel() {
+        return true;
+    }
+
+    @Override
+    public SeekableByteChannel getResourceChannel(final ITransaction transaction,
+            final String uri) throws WebdavException {
+        LOG.trace("LocalFileSystemStore.getResourceChannel(" + uri + ")");
+        try {
+            return FileChannel.open(resolve(uri), StandardOpenOption.READ);
+        } catch (final NoSuchFileException e) {
+            throw new ObjectNotFoundException(uri, e);
+        } catch (final java.nio.file.AccessDeniedException e) {
+            throw new AccessDeniedException(uri, e);
+        } catch (final IOException e) {
+            LOG.error("LocalFileSystemStore.getResourceChannel(" + uri
+                    + ") failed");
+            throw new WebdavException(e);
+        }
+    }
+
     @Override
     public long getResourceLength(final ITransaction transaction, final String uri)
             throws WebdavException {
         LOG.trace("LocalFileSystemStore.getResourceLength(" + uri + ")");
-        final File file = new File(_root, uri);
-        return file.length();
+        try {
+            return Files.size(resolve(uri));
+        } catch (final IOException e) {
+            return 0L;
+        }
     }
 
     @Override
     public StoredObject getStoredObject(final ITransaction transaction, final String uri) {
 
-        StoredObject so = null;
+        final BasicFileAttributes attributes = readAttributes(resolve(uri));
+        return attributes == null ? null : toStoredObject(attributes);
+    }
+
+    /**
+     * Maps a store uri to a path below the root folder.
+     *
+     * @param uri
+     *      the uri, usually starting with a "/"
+     * @return the corresponding file system path
+     */
+    protected Path resolve(final String uri) {
+        int start = 0;
+        while (start < uri.length() && uri.charAt(start) == '/') {
+            start++;
+        }
+        return start == uri.length() ? _root : _root.resolve(uri
+                .substring(start));
+    }
+
+    /**
+     * Reads all basic attributes of a file with one file system call.
+     *
+     * @return the attributes, or <code>null</code> if the file does not exist
+     */
+    private static BasicFileAttributes readAttributes(final Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            return null;
+        } catch (final java.nio.file.AccessDeniedException e) {
+            throw new AccessDeniedException(e.getMessage(), e);
+        } catch (final IOException e) {
+            throw new WebdavException(e);
+        }
+    }
+
+    @Override
+    public boolean supportsResourceWriter() {
+        return true;
+    }
 
-        final File file = new File(_root, uri);
-        if (file.exists()) {
-            so = new StoredObject();
-            so.setFolder(file.isDirectory());
-            so.setLastModified(new Date(file.lastModified()));
-            so.setCreationDate(new Date(file.lastModified()));
-            so.setResourceLength(getResourceLength(transaction, uri));
+    @Override
+    public ResourceWriter openResourceWriter(final ITransaction transaction,
+            final String uri, final String contentType,
+            final String characterEncoding, final long contentLength)
+            throws WebdavException {
+        LOG.trace("LocalFileSystemStore.openResourceWriter(" + uri + ", "
+                + contentLength + ")");
+        try {
+            return new FileResourceWriter(resolve(uri), _stagedWrites);
+        } catch (final IOException e) {
+            throw new WebdavException(e);
         }
+    }
 
+    /**
+     * Writes the content to a temporary file next to <code>file</code> and
+     * renames it to <code>file</code> afterwards.
+     */
+    private static void writeStaged(final Path file, final InputStream is)
+            throws IOException {
+        // not Files.createTempFile, which would restrict the permissions
+        final Path staged = file.resolveSibling(STAGING_PREFIX
+                + UUID.randomUUID());
+        try {
+            try (FileChannel channel = FileChannel.open(staged,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                write(channel, is);
+                channel.force(true);
+            }
+            try {
+                Files.move(staged, file, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(staged, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    /**
+     * Copies the content into an empty file, without closing the stream or
+     * the channel.
+     */
+    private static void write(final FileChannel channel, final InputStream is)
+            throws IOException {
+        final OutputStream os = new BufferedOutputStream(
+                Channels.newOutputStream(channel), BUF_SIZE);
+        int read;
+        final byte[] copyBuffer = new byte[BUF_SIZE];
+
+        while ((read = is.read(copyBuffer, 0, copyBuffer.length)) != -1) {
+            os.write(copyBuffer, 0, read);
+        }
+        os.flush();
+    }
+
+    /**
+     * Removes a tree depth first on the calling thread. Folders containing a
+     * member that could not be removed are kept.
+     */
+    private static void walkAndRemove(final Path folder,
+            final Map<Path, IOException> failed) {
+        final Set<Path> kept = new HashSet<>();
+        try {
+            Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult visitFile(final Path file,
+                        final BasicFileAttributes attributes) {
+                    if (!delete(file, failed)) {
+                        kept.add(file.getParent());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file,
+                        final IOException e) {
+                    if (!(e instanceof NoSuchFileException)) {
+                        failed.put(file, e);
+                        kept.add(file.getParent());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(final Path dir,
+                        final IOException e) {
+                    if (e != null) {
+                        failed.put(dir, e);
+                        kept.add(dir.getParent());
+                    } else if (kept.contains(dir) || !delete(dir, failed)) {
+                        kept.add(dir.getParent());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (final IOException e) {
+            // the visitor does not throw
+            failed.put(folder, e);
+        }
+    }
+
+    /**
+     * Removes a folder after all of its sub folders have been removed by
+     * tasks of their own.
+     */
+    private static final class RemoveTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path _folder;
+        private final Map<Path, IOException> _failed;
+        private boolean _removed;
+
+        private RemoveTask(final Path folder, final Map<Path, IOException> failed) {
+            _folder = folder;
+            _failed = failed;
+        }
+
+        @Override
+        protected void compute() {
+            final List<RemoveTask> subTasks = new ArrayList<>();
+            boolean empty = true;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(_folder)) {
+                for (final Path child : stream) {
+                    if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                        subTasks.add(new RemoveTask(child, _failed));
+                    } else {
+                        empty &= delete(child, _failed);
+                    }
+                }
+            } catch (final NoSuchFileException e) {
+                _removed = true;
+                return;
+            } catch (final NotDirectoryException e) {
+                _removed = delete(_folder, _failed);
+                return;
+            } catch (final IOException e) {
+                _failed.put(_folder, e);
+                return;
+            }
+            invokeAll(subTasks);
+            for (final RemoveTask subTask : subTasks) {
+                empty &= subTask._removed;
+            }
+            _removed = empty && delete(_folder, _failed);
+        }
+    }
+
+    /**
+     * Reads the attributes of a range of paths, splitting it until a batch is
+     * small enough to be read by one thread.
+     */
+    private static final class AttributesTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final int BATCH_SIZE = 8;
+
+        private final List<Path> _paths;
+        private final BasicFileAttributes[] _attributes;
+        private final int _from;
+        private final int _to;
+
+        private AttributesTask(final List<Path> paths,
+                final BasicFileAttributes[] attributes, final int from,
+                final int to) {
+            _paths = paths;
+            _attributes = attributes;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from <= BATCH_SIZE) {
+                for (int i = _from; i < _to; i++) {
+                    _attributes[i] = readAttributes(_paths.get(i));
+                }
+            } else {
+                final int middle = (_from + _to) >>> 1;
+                invokeAll(new AttributesTask(_paths, _attributes, _from,
+                        middle), new AttributesTask(_paths, _attributes,
+                        middle, _to));
+            }
+        }
+    }
+
+    /**
+     * Deletes a file or an empty folder.
+     *
+     * @return <code>false</code> if the path still exists
+     */
+    private static boolean delete(final Path path,
+            final Map<Path, IOException> failed) {
+        try {
+            Files.deleteIfExists(path);
+            return true;
+        } catch (final IOException e) {
+            failed.put(path, e);
+            return false;
+        }
+    }
+
+    private static String toUri(final String folderUri, final Path folder,
+            final Path path) {
+        final StringBuilder uri = new StringBuilder(folderUri);
+        if (uri.length() > 0 && uri.charAt(uri.length() - 1) == '/') {
+            uri.setLength(uri.length() - 1);
+        }
+        for (final Path name : folder.relativize(path)) {
+            uri.append('/').append(name);
+        }
+        return uri.toString();
+    }
+
+    private static WebdavException toDeleteException(final String uri,
+            final IOException e) {
+        if (e instanceof java.nio.file.AccessDeniedException) {
+            return new AccessDeniedException("cannot delete object: " + uri, e);
+        } else if (e instanceof NoSuchFileException) {
+            return new ObjectNotFoundException("cannot delete object: " + uri, e);
+        } else {
+            return new WebdavException("cannot delete object: " + uri, e);
+        }
+    }
+
+    private StoredObject toStoredObject(final BasicFileAttributes attributes) {
+        final StoredObject so = new StoredObject();
+        so.setFolder(attributes.isDirectory());
+        so.setLastModified(new Date(attributes.lastModifiedTime().toMillis()));
+        so.setCreationDate(new Date(attributes.creationTime().toMillis()));
+        so.setResourceLength(attributes.size());
         return so;
     }
 
+    /**
+     * Writes content into the file as it arrives, or into a temporary file
+     * next to it which replaces the file when finished, as
+     * {@link #writeStaged} does.
+     */
+    private static final class FileResourceWriter implements ResourceWriter {
+
+        private final Path _file;
+        private final Path _staged;
+        private final FileChannel _channel;
+
+        private FileResourceWriter(final Path file, final boolean staged)
+                throws IOException {
+            _file = file;
+            if (staged) {
+                _staged = file.resolveSibling(STAGING_PREFIX
+                        + UUID.randomUUID());
+                _channel = FileChannel.open(_staged,
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            } else {
+                _staged = null;
+                _channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE);
+            }
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            try {
+                final ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    _channel.write(buffer);
+                }
+            } catch (final IOException e) {
+                throw new WebdavException(e);
+            }
+        }
+
+        @Override
+        public long finish() {
+            try {
+                try {
+                    if (_staged != null) {
+                        _channel.force(true);
+                    }
+                } finally {
+                    _channel.close();
+                }
+                if (_staged != null) {
+                    try {
+                        Files.move(_staged, _file,
+                                StandardCopyOption.ATOMIC_MOVE,
+                                StandardCopyOption.REPLACE_EXISTING);
+                    } catch (final AtomicMoveNotSupportedException e) {
+                        Files.move(_staged, _file,
+                                StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                return Files.size(_file);
+            } catch (final IOException e) {
+                abort();
+                throw new WebdavException(e);
+            }
+        }
+
+        @Override
+        public void abort() {
+            try {
+                _channel.close();
+                if (_staged != null) {
+                    Files.deleteIfExists(_staged);
+                }
+            } catch (final IOException e) {
+                LOG.warn("LocalFileSystemStore: cannot abort writing " + _file
+                        + ": " + e);
+            }
+        }
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * Least recently used cache of read-only file mappings, bounded by the total
+ * size of the mapped files.
+ * <p>
+ * A mapping is only handed out again while the file has the same
+ * modification time, size and file key (inode) as when it was mapped.
+ * Mappings dropped from the cache are unmapped by the garbage collector.
+ */
+class MappedContentCache {
+
+    private final long _maxFileSize;
+    private final long _capacity;
+
+    private final LinkedHashMap<Path, Mapping> _mappings = new LinkedHashMap<>(
+            16, 0.75f, true);
+    private long _size;
+
+    /**
+     * @param maxFileSize
+     *      files larger than this are not mapped
+     * @param capacity
+     *      maximum total size of all mappings in the cache
+     */
+    MappedContentCache(final long maxFileSize, final long capacity) {
+        // a single mapping can not exceed 2 GB
+        _maxFileSize = Math.min(maxFileSize, Integer.MAX_VALUE);
+        _capacity = capacity;
+    }
+
+    /**
+     * Gets the content of a regular file from its mapping, mapping it if
+     * necessary.
+     *
+     * @param file
+     *      the file
+     * @param attributes
+     *      current attributes of the file
+     * @return a buffer over the whole content, or <code>null</code> if the
+     *  file is too large to be mapped
+     * @throws IOException
+     *      if the file can not be mapped
+     */
+    ByteBuffer get(final Path file, final BasicFileAttributes attributes)
+            throws IOException {
+        final long size = attributes.size();
+        if (size > _maxFileSize || size > _capacity) {
+            return null;
+        }
+        synchronized (this) {
+            final Mapping mapping = _mappings.get(file);
+            if (mapping != null && mapping.isCurrent(attributes)) {
+                return mapping._buffer.duplicate();
+            }
+        }
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        synchronized (this) {
+            final Mapping previous = _mappings.put(file, new Mapping(
+                    attributes, buffer));
+            if (previous != null) {
+                _size -= previous._buffer.capacity();
+            }
+            _size += size;
+            final Iterator<Mapping> eldest = _mappings.values().iterator();
+            while (_size > _capacity) {
+                _size -= eldest.next()._buffer.capacity();
+                eldest.remove();
+            }
+        }
+        return buffer.duplicate();
+    }
+
+    private static final class Mapping {
+
+        private final long _lastModified;
+        private final Object _fileKey;
+        private final MappedByteBuffer _buffer;
+
+        private Mapping(final BasicFileAttributes attributes,
+                final MappedByteBuffer buffer) {
+            _lastModified = attributes.lastModifiedTime().toMillis();
+            _fileKey = attributes.fileKey();
+            _buffer = buffer;
+        }
+
+        private boolean isCurrent(final BasicFileAttributes attributes) {
+            return _lastModified == attributes.lastModifiedTime().toMillis()
+                    && _buffer.capacity() == attributes.size()
+                    && Objects.equals(_fileKey, attributes.fileKey());
+        }
+    }
+}
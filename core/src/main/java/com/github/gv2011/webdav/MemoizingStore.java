@@ -0,0 +1,256 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.security.Principal;
+import java.util.Map;
+
+import com.github.gv2011.webdav.exceptions.WebdavException;
+
+/**
+ * WebdavStore which remembers StoredObjects and children names for the
+ * duration of one transaction, so that the method handlers can look up the
+ * same object several times per request without asking the store behind it
+ * again.
+ * <p>
+ * {@link #begin(Principal)} returns a {@link Transaction}, which holds what
+ * has been read and is unwrapped before every call to the store behind.
+ * Changes made within the transaction make it forget the affected objects.
+ * Nothing is shared between transactions, so there is no coherence issue
+ * with other requests.
+ * <p>
+ * The StoredObjects are handed out as the store behind returned them, not as
+ * copies. Handlers change them and rely on the changes to stick, e.g. when
+ * marking a lock-null resource: later lookups within the request see the
+ * changes, and so does a store which returns its live objects.
+ */
+public class MemoizingStore extends DelegatingStore {
+
+    public MemoizingStore(final IWebdavStore delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public ITransaction begin(final Principal principal) {
+        return new Transaction(principal, super.begin(principal));
+    }
+
+    @Override
+    public void checkAuthentication(final ITransaction transaction) {
+        super.checkAuthentication(unwrap(transaction));
+    }
+
+    @Override
+    public void commit(final ITransaction transaction) {
+        forgetAll(transaction);
+        super.commit(unwrap(transaction));
+    }
+
+    @Override
+    public void rollback(final ITransaction transaction) {
+        forgetAll(transaction);
+        super.rollback(unwrap(transaction));
+    }
+
+    @Override
+    public void createFolder(final ITransaction transaction, final String folderUri) {
+        try {
+            super.createFolder(unwrap(transaction), folderUri);
+        } finally {
+            forget(transaction, folderUri, false, true);
+        }
+    }
+
+    @Override
+    public void createResource(final ITransaction transaction, final String resourceUri) {
+        try {
+            super.createResource(unwrap(transaction), resourceUri);
+        } finally {
+            forget(transaction, resourceUri, false, true);
+        }
+    }
+
+    @Override
+    public InputStream getResourceContent(final ITransaction transaction,
+            final String resourceUri) {
+        return super.getResourceContent(unwrap(transaction), resourceUri);
+    }
+
+    @Override
+    public ByteBuffer getResourceBuffer(final ITransaction transaction,
+            final String resourceUri) {
+        return super.getResourceBuffer(unwrap(transaction), resourceUri);
+    }
+
+    @Override
+    public SeekableByteChannel getResourceChannel(final ITransaction transaction,
+            final String resourceUri) {
+        return super.getResourceChannel(unwrap(transaction), resourceUri);
+    }
+
+    @Override
+    public long setResourceContent(final ITransaction transaction,
+            final String resourceUri, final InputStream content,
+            final String contentType, final String characterEncoding) {
+        try {
+            return super.setResourceContent(unwrap(transaction), resourceUri,
+                    content, contentType, characterEncoding);
+        } finally {
+            forget(transaction, resourceUri, false, false);
+        }
+    }
+
+    @Override
+    public long setResourceContent(final ITransaction transaction,
+            final String resourceUri, final InputStream content,
+            final String contentType, final String characterEncoding,
+            final long contentLength) {
+        try {
+            return super.setResourceContent(unwrap(transaction), resourceUri,
+                    content, contentType, characterEncoding, contentLength);
+        } finally {
+            forget(transaction, resourceUri, false, false);
+        }
+    }
+
+    @Override
+    public ResourceWriter openResourceWriter(final ITransaction transaction,
+            final String resourceUri, final String contentType,
+            final String characterEncoding, final long contentLength) {
+        return onFinish(super.openResourceWriter(unwrap(transaction), resourceUri,
+                contentType, characterEncoding, contentLength),
+                () -> forget(transaction, resourceUri, false, false));
+    }
+
+    @Override
+    public String[] getChildrenNames(final ITransaction transaction, final String folderUri) {
+        if (!(transaction instanceof Transaction)) {
+            return super.getChildrenNames(transaction, folderUri);
+        }
+        final Transaction memo = (Transaction) transaction;
+        final String path = normalize(folderUri);
+        String[] children = memo.getChildrenNames(path);
+        if (children == null) {
+            children = super.getChildrenNames(unwrap(transaction), folderUri);
+            if (children != null) {
+                memo.putChildrenNames(path, children);
+            }
+        }
+        return children;
+    }
+
+    @Override
+    public Map<String, StoredObject> getChildren(final ITransaction transaction,
+            final String folderUri) {
+        final Map<String, StoredObject> children = super.getChildren(
+                unwrap(transaction), folderUri);
+        if (children != null && transaction instanceof Transaction) {
+            final Transaction memo = (Transaction) transaction;
+            final String path = normalize(folderUri);
+            final String prefix = path.equals("/") ? path : path + "/";
+            for (final Map.Entry<String, StoredObject> child : children
+                    .entrySet()) {
+                memo.putStoredObject(prefix + child.getKey(), child.getValue());
+            }
+            memo.putChildrenNames(path, children.keySet().toArray(
+                    new String[children.size()]));
+        }
+        return children;
+    }
+
+    @Override
+    public long getResourceLength(final ITransaction transaction, final String path) {
+        return super.getResourceLength(unwrap(transaction), path);
+    }
+
+    @Override
+    public void removeObject(final ITransaction transaction, final String uri) {
+        try {
+            super.removeObject(unwrap(transaction), uri);
+        } finally {
+            forget(transaction, uri, false, true);
+        }
+    }
+
+    @Override
+    public void removeTree(final ITransaction transaction, final String folderUri,
+            final Map<String, WebdavException> failures) {
+        try {
+            super.removeTree(unwrap(transaction), folderUri, failures);
+        } finally {
+            forget(transaction, folderUri, true, true);
+        }
+    }
+
+    @Override
+    public boolean moveObject(final ITransaction transaction,
+            final String sourceUri, final String destinationUri) {
+        try {
+            return super.moveObject(unwrap(transaction), sourceUri,
+                    destinationUri);
+        } finally {
+            forget(transaction, sourceUri, true, true);
+            forget(transaction, destinationUri, true, true);
+        }
+    }
+
+    @Override
+    public boolean copyObject(final ITransaction transaction,
+            final String sourceUri, final String destinationUri) {
+        try {
+            return super.copyObject(unwrap(transaction), sourceUri,
+                    destinationUri);
+        } finally {
+            forget(transaction, destinationUri, false, true);
+        }
+    }
+
+    @Override
+    public StoredObject getStoredObject(final ITransaction transaction, final String uri) {
+        if (!(transaction instanceof Transaction)) {
+            return super.getStoredObject(transaction, uri);
+        }
+        final Transaction memo = (Transaction) transaction;
+        final String path = normalize(uri);
+        if (memo.hasStoredObject(path)) {
+            return memo.getStoredObject(path);
+        }
+        final StoredObject so = super.getStoredObject(unwrap(transaction), uri);
+        memo.putStoredObject(path, so);
+        return so;
+    }
+
+    private static ITransaction unwrap(final ITransaction transaction) {
+        return transaction instanceof Transaction ? ((Transaction) transaction)
+                .getStoreTransaction() : transaction;
+    }
+
+    private static void forget(final ITransaction transaction,
+            final String uri, final boolean subtree, final boolean parent) {
+        if (transaction instanceof Transaction) {
+            ((Transaction) transaction).forget(normalize(uri), subtree, parent);
+        }
+    }
+
+    private static void forgetAll(final ITransaction transaction) {
+        if (transaction instanceof Transaction) {
+            ((Transaction) transaction).forgetAll();
+        }
+    }
+}
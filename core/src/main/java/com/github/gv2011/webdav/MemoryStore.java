@@ -0,0 +1,644 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.gv2011.webdav.exceptions.ObjectAlreadyExistsException;
+import com.github.gv2011.webdav.exceptions.ObjectNotFoundException;
+import com.github.gv2011.webdav.exceptions.WebdavException;
+
+/**
+ * In-memory implementation of WebdavStore, e.g. for scratch space and tests.
+ * <p>
+ * The namespace is a tree of nodes whose children are kept in concurrent
+ * maps, so reads never block. Content is stored in fixed size direct
+ * ByteBuffer chunks taken from a pool whose total size is limited.
+ * <p>
+ * Changes made within a transaction are kept in the transaction and are only
+ * visible to it, until {@link #commit} applies them to the tree.
+ * {@link #rollback} discards them. Commits are serialized; when two
+ * transactions change the same path, the last commit wins. Calls with a
+ * <code>null</code> transaction are committed immediately.
+ */
+public class MemoryStore implements IWebdavStore {
+
+    private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory
+            .getLogger(MemoryStore.class);
+
+    /**
+     * Overlay entry of a path removed within a transaction.
+     */
+    private static final Node REMOVED = new Node(false, 0, null);
+
+    private final ChunkPool _pool;
+
+    private final Node _root = new Node(true, System.currentTimeMillis(), null);
+
+    private final Object _commitLock = new Object();
+
+    /**
+     * Creates a store with 64 KB chunks and no limit other than the direct
+     * memory of the JVM.
+     */
+    public MemoryStore() {
+        this(65536, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param chunkSize
+     *      size of the chunks content is stored in
+     * @param capacity
+     *      maximum number of bytes allocated for content, including unused
+     *      pooled chunks and partially filled last chunks
+     */
+    public MemoryStore(final int chunkSize, final long capacity) {
+        _pool = new ChunkPool(chunkSize, capacity);
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    @Override
+    public ITransaction begin(final Principal principal) throws WebdavException {
+        LOG.trace("MemoryStore.begin()");
+        return new MemoryTransaction(principal);
+    }
+
+    @Override
+    public void checkAuthentication(final ITransaction transaction) {
+        // do nothing
+    }
+
+    @Override
+    public void commit(final ITransaction transaction) throws WebdavException {
+        LOG.trace("MemoryStore.commit()");
+        if (transaction == null) {
+            return;
+        }
+        final Map<String, Node> changes = changes(transaction);
+        synchronized (_commitLock) {
+            // check first, so that a failing commit does not apply anything
+            for (final Map.Entry<String, Node> change : changes.entrySet()) {
+                final String parentPath = getParentPath(change.getKey());
+                if (change.getValue() != REMOVED
+                        && !changes.containsKey(parentPath)) {
+                    final Node parent = lookup(null, parentPath);
+                    if (parent == null || !parent.isFolder()) {
+                        throw new WebdavException("conflict, "
+                                + parentPath + " has been removed");
+                    }
+                }
+            }
+            final long now = System.currentTimeMillis();
+            for (final Map.Entry<String, Node> change : changes.entrySet()) {
+                final String path = change.getKey();
+                final Node parent = lookup(null, getParentPath(path));
+                if (parent == null || !parent.isFolder()) {
+                    // removed together with an ancestor
+                    continue;
+                }
+                final String name = path.substring(path.lastIndexOf('/') + 1);
+                final Node node = change.getValue();
+                final Node previous;
+                if (node == REMOVED) {
+                    previous = parent._children.remove(name);
+                } else if (node.isFolder()) {
+                    // keep a folder created by a concurrent commit, with its
+                    // children
+                    final Node existing = parent._children.get(name);
+                    previous = existing != null && existing.isFolder() ? null
+                            : parent._children.put(name, node);
+                } else {
+                    previous = parent._children.put(name, node);
+                }
+                if (previous != null) {
+                    previous.release();
+                }
+                parent._lastModified = now;
+            }
+        }
+        changes.clear();
+    }
+
+    @Override
+    public void rollback(final ITransaction transaction) throws WebdavException {
+        LOG.trace("MemoryStore.rollback()");
+        if (transaction == null) {
+            return;
+        }
+        final Map<String, Node> changes = changes(transaction);
+        for (final Node node : changes.values()) {
+            node.release();
+        }
+        changes.clear();
+    }
+
+    @Override
+    public void createFolder(final ITransaction transaction, final String uri)
+            throws WebdavException {
+        LOG.trace("MemoryStore.createFolder(" + uri + ")");
+        final String path = normalize(uri);
+        checkCreate(transaction, path);
+        put(transaction, path, new Node(true, System.currentTimeMillis(), null));
+    }
+
+    @Override
+    public void createResource(final ITransaction transaction, final String uri)
+            throws WebdavException {
+        LOG.trace("MemoryStore.createResource(" + uri + ")");
+        final String path = normalize(uri);
+        checkCreate(transaction, path);
+        put(transaction, path, new Node(false, System.currentTimeMillis(),
+                Content.EMPTY));
+    }
+
+    @Override
+    public InputStream getResourceContent(final ITransaction transaction,
+            final String uri) throws WebdavException {
+        LOG.trace("MemoryStore.getResourceContent(" + uri + ")");
+        final String path = normalize(uri);
+        while (true) {
+            final Node node = lookup(transaction, path);
+            if (node == null || node.isFolder()) {
+                throw new ObjectNotFoundException(uri);
+            }
+            // fails if a commit replaced the node meanwhile
+            if (node._content.acquire()) {
+                return new ContentInputStream(node._content);
+            }
+        }
+    }
+
+    @Override
+    public long setResourceContent(final ITransaction transaction,
+            final String uri, final InputStream is, final String contentType,
+            final String characterEncoding) throws WebdavException {
+        LOG.trace("MemoryStore.setResourceContent(" + uri + ")");
+        final String path = normalize(uri);
+        final Node node = lookup(transaction, path);
+        if (node == null) {
+            checkCreate(transaction, path);
+        } else if (node.isFolder()) {
+            throw new WebdavException("cannot write into folder: " + uri);
+        }
+        final Content content;
+        try {
+            try {
+                content = _pool.read(is);
+            } finally {
+                is.close();
+            }
+        } catch (final IOException e) {
+            LOG.error("MemoryStore.setResourceContent(" + uri + ") failed");
+            throw new WebdavException(e);
+        }
+        final long now = System.currentTimeMillis();
+        put(transaction, path, new Node(false, node == null ? now
+                : node._creationDate, now, content));
+        return content._length;
+    }
+
+    @Override
+    public boolean copyObject(final ITransaction transaction,
+            final String sourceUri, final String destinationUri)
+            throws WebdavException {
+        LOG.trace("MemoryStore.copyObject(" + sourceUri + ", "
+                + destinationUri + ")");
+        final String destinationPath = normalize(destinationUri);
+        final Node source = lookup(transaction, normalize(sourceUri));
+        if (source == null || source.isFolder()) {
+            return false;
+        }
+        checkCreate(transaction, destinationPath);
+        if (!source._content.acquire()) {
+            return false;
+        }
+        // both nodes share the chunks
+        put(transaction, destinationPath, new Node(false, System
+                .currentTimeMillis(), source._content));
+        return true;
+    }
+
+    @Override
+    public String[] getChildrenNames(final ITransaction transaction,
+            final String uri) throws WebdavException {
+        LOG.trace("MemoryStore.getChildrenNames(" + uri + ")");
+        final String path = normalize(uri);
+        final Node folder = lookup(transaction, path);
+        if (folder == null || !folder.isFolder()) {
+            return null;
+        }
+        final List<String> names = listChildren(transaction, path, folder);
+        return names.toArray(new String[names.size()]);
+    }
+
+    @Override
+    public void removeObject(final ITransaction transaction, final String uri)
+            throws WebdavException {
+        LOG.trace("MemoryStore.removeObject(" + uri + ")");
+        final String path = normalize(uri);
+        final Node node = lookup(transaction, path);
+        if (node == null || path.isEmpty()) {
+            throw new ObjectNotFoundException("cannot delete object: " + uri);
+        }
+        if (node.isFolder()
+                && !listChildren(transaction, path, node).isEmpty()) {
+            throw new WebdavException("cannot delete non empty folder: " + uri);
+        }
+        put(transaction, path, REMOVED);
+    }
+
+    @Override
+    public long getResourceLength(final ITransaction transaction,
+            final String uri) throws WebdavException {
+        LOG.trace("MemoryStore.getResourceLength(" + uri + ")");
+        final Node node = lookup(transaction, normalize(uri));
+        return node == null || node.isFolder() ? 0L : node._content._length;
+    }
+
+    @Override
+    public StoredObject getStoredObject(final ITransaction transaction,
+            final String uri) {
+        final Node node = lookup(transaction, normalize(uri));
+        if (node == null) {
+            return null;
+        }
+        final StoredObject so = new StoredObject();
+        so.setFolder(node.isFolder());
+        so.setCreationDate(new Date(node._creationDate));
+        so.setLastModified(new Date(node._lastModified));
+        so.setResourceLength(node.isFolder() ? 0L : node._content._length);
+        return so;
+    }
+
+    /**
+     * @return the number of bytes currently allocated for content
+     */
+    public long getAllocatedBytes() {
+        return _pool._allocated.get();
+    }
+
+    /**
+     * Resolves a path in the view of a transaction: entries changed within the
+     * transaction take precedence over the committed tree.
+     */
+    private Node lookup(final ITransaction transaction, final String path) {
+        final TreeMap<String, Node> changes = transaction == null ? null
+                : changes(transaction);
+        Node node = _root;
+        int start = 1;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            final Node changed = changes == null ? null : changes.get(path
+                    .substring(0, end));
+            if (changed != null) {
+                node = changed == REMOVED ? null : changed;
+            } else {
+                node = node._children.get(path.substring(start, end));
+            }
+            if (node == null || (end < path.length() && !node.isFolder())) {
+                return null;
+            }
+            start = end + 1;
+        }
+        return node;
+    }
+
+    private List<String> listChildren(final ITransaction transaction,
+            final String path, final Node folder) {
+        final List<String> names = new ArrayList<>();
+        final TreeMap<String, Node> changes = transaction == null ? null
+                : changes(transaction);
+        for (final String name : folder._children.keySet()) {
+            if (changes == null || !changes.containsKey(path + "/" + name)) {
+                names.add(name);
+            }
+        }
+        if (changes != null) {
+            // '0' follows '/', so the sub map holds all paths below the folder
+            for (final Map.Entry<String, Node> change : changes.subMap(
+                    path + "/", path + "0").entrySet()) {
+                final String name = change.getKey().substring(path.length() + 1);
+                if (name.indexOf('/') < 0 && change.getValue() != REMOVED) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
+    private void checkCreate(final ITransaction transaction, final String path) {
+        if (lookup(transaction, path) != null) {
+            throw new ObjectAlreadyExistsException(path);
+        }
+        final Node parent = lookup(transaction, getParentPath(path));
+        if (parent == null || !parent.isFolder()) {
+            throw new ObjectNotFoundException("parent of " + path
+                    + " does not exist");
+        }
+    }
+
+    private void put(final ITransaction transaction, final String path,
+            final Node node) {
+        if (transaction == null) {
+            final MemoryTransaction autoCommit = new MemoryTransaction(null);
+            autoCommit._changes.put(path, node);
+            commit(autoCommit);
+        } else {
+            final Node previous = changes(transaction).put(path, node);
+            if (previous != null) {
+                // only ever visible to this transaction
+                previous.release();
+            }
+        }
+    }
+
+    private static TreeMap<String, Node> changes(final ITransaction transaction) {
+        if (!(transaction instanceof MemoryTransaction)) {
+            throw new WebdavException("not a transaction of this store: "
+                    + transaction);
+        }
+        return ((MemoryTransaction) transaction)._changes;
+    }
+
+    /**
+     * @return the path without trailing "/" and with a leading "/", or "" for
+     *  the root
+     */
+    private static String normalize(final String uri) {
+        final StringBuilder path = new StringBuilder(uri.length() + 1);
+        for (final String name : uri.split("/")) {
+            if (!name.isEmpty()) {
+                path.append('/').append(name);
+            }
+        }
+        return path.toString();
+    }
+
+    private static String getParentPath(final String path) {
+        return path.substring(0, Math.max(0, path.lastIndexOf('/')));
+    }
+
+    private static final class MemoryTransaction implements ITransaction {
+
+        private final Principal _principal;
+
+        /**
+         * Changed paths in commit order, parents come before their children.
+         */
+        private final TreeMap<String, Node> _changes = new TreeMap<>();
+
+        private MemoryTransaction(final Principal principal) {
+            _principal = principal;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return _principal;
+        }
+    }
+
+    private static final class Node {
+
+        private final long _creationDate;
+        private volatile long _lastModified;
+        private final Content _content;
+        private final ConcurrentSkipListMap<String, Node> _children;
+
+        private Node(final boolean folder, final long creationDate,
+                final Content content) {
+            this(folder, creationDate, creationDate, content);
+        }
+
+        private Node(final boolean folder, final long creationDate,
+                final long lastModified, final Content content) {
+            _creationDate = creationDate;
+            _lastModified = lastModified;
+            _content = content;
+            _children = folder ? new ConcurrentSkipListMap<>() : null;
+        }
+
+        private boolean isFolder() {
+            return _children != null;
+        }
+
+        /**
+         * Releases the content of this node and all nodes below it.
+         */
+        private void release() {
+            if (_content != null) {
+                _content.release();
+            } else if (_children != null) {
+                for (final Node child : _children.values()) {
+                    child.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Immutable content in pooled chunks. The chunks return to the pool when
+     * the last node or stream referring to them releases them.
+     */
+    private static final class Content {
+
+        private static final Content EMPTY = new Content(null,
+                new ByteBuffer[0], 0);
+
+        private final ChunkPool _pool;
+        private final ByteBuffer[] _chunks;
+        private final long _length;
+        private final AtomicInteger _references = new AtomicInteger(1);
+
+        private Content(final ChunkPool pool, final ByteBuffer[] chunks,
+                final long length) {
+            _pool = pool;
+            _chunks = chunks;
+            _length = length;
+        }
+
+        /**
+         * @return <code>false</code> if the content has already been released
+         */
+        private boolean acquire() {
+            if (_pool == null) {
+                // empty content is shared and never released
+                return true;
+            }
+            int references;
+            do {
+                references = _references.get();
+                if (references == 0) {
+                    return false;
+                }
+            } while (!_references.compareAndSet(references, references + 1));
+            return true;
+        }
+
+        private void release() {
+            if (_pool != null && _references.decrementAndGet() == 0) {
+                for (final ByteBuffer chunk : _chunks) {
+                    _pool.free(chunk);
+                }
+            }
+        }
+    }
+
+    private static final class ContentInputStream extends InputStream {
+
+        private final Content _content;
+        private int _chunk;
+        private ByteBuffer _current;
+        private boolean _closed;
+
+        private ContentInputStream(final Content content) {
+            _content = content;
+        }
+
+        @Override
+        public int read() {
+            final ByteBuffer current = current();
+            return current == null ? -1 : current.get() & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            final ByteBuffer current = current();
+            if (current == null) {
+                return -1;
+            }
+            final int read = Math.min(len, current.remaining());
+            current.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            final ByteBuffer current = current();
+            return current == null ? 0 : current.remaining();
+        }
+
+        @Override
+        public void close() {
+            if (!_closed) {
+                _closed = true;
+                _current = null;
+                _chunk = _content._chunks.length;
+                _content.release();
+            }
+        }
+
+        private ByteBuffer current() {
+            while (_current == null || !_current.hasRemaining()) {
+                if (_chunk >= _content._chunks.length) {
+                    return null;
+                }
+                _current = _content._chunks[_chunk++].duplicate();
+            }
+            return _current;
+        }
+    }
+
+    private static final class ChunkPool {
+
+        private final int _chunkSize;
+        private final long _capacity;
+        private final AtomicLong _allocated = new AtomicLong();
+        private final Queue<ByteBuffer> _free = new ConcurrentLinkedQueue<>();
+
+        private ChunkPool(final int chunkSize, final long capacity) {
+            _chunkSize = chunkSize;
+            _capacity = capacity;
+        }
+
+        /**
+         * Reads a stream into chunks, without closing it.
+         */
+        private Content read(final InputStream is) throws IOException {
+            final List<ByteBuffer> chunks = new ArrayList<>();
+            final ReadableByteChannel in = Channels.newChannel(is);
+            long length = 0;
+            try {
+                ByteBuffer chunk = null;
+                while (true) {
+                    if (chunk == null || !chunk.hasRemaining()) {
+                        chunk = allocate();
+                        chunks.add(chunk);
+                    }
+                    final int read = in.read(chunk);
+                    if (read < 0) {
+                        break;
+                    }
+                    length += read;
+                }
+                if (chunk.position() == 0) {
+                    chunks.remove(chunks.size() - 1);
+                    free(chunk);
+                }
+            } catch (IOException | RuntimeException e) {
+                for (final ByteBuffer chunk : chunks) {
+                    free(chunk);
+                }
+                throw e;
+            }
+            for (final ByteBuffer chunk : chunks) {
+                chunk.flip();
+            }
+            return new Content(this, chunks.toArray(new ByteBuffer[chunks
+                    .size()]), length);
+        }
+
+        private ByteBuffer allocate() {
+            final ByteBuffer chunk = _free.poll();
+            if (chunk != null) {
+                return chunk;
+            }
+            if (_allocated.addAndGet(_chunkSize) > _capacity) {
+                _allocated.addAndGet(-_chunkSize);
+                throw new WebdavException("memory store is full");
+            }
+            return ByteBuffer.allocateDirect(_chunkSize);
+        }
+
+        private void free(final ByteBuffer chunk) {
+            chunk.clear();
+            _free.offer(chunk);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav;
+
+import java.io.InputStream;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * WebdavStore which remembers the URIs another store reported as not
+ * existing, e.g. the <code>desktop.ini</code> and <code>.DS_Store</code>
+ * files clients probe for, and answers further lookups of them without the
+ * backend.
+ * <p>
+ * The URIs are kept exactly, least recently used and bounded in number, so
+ * that an URI is never reported as missing after it has been created through
+ * this store. For a transactional backend, where other transactions only see
+ * the object once it is committed, the URIs created within a transaction are
+ * invalidated again when it commits. Entries expire after a time to live, to
+ * notice objects created in the backend by other means. A rollback clears the
+ * cache.
+ */
+public class NegativeCachingStore extends DelegatingStore {
+
+    private final int _maxEntries;
+    private final long _timeToLive;
+
+    /**
+     * Missing URIs and when their entries expire.
+     */
+    private final LinkedHashMap<String, Long> _missing = new LinkedHashMap<>(
+            16, 0.75f, true);
+
+    /**
+     * Counts invalidations, so that lookups which started before an
+     * invalidation are not cached after it.
+     */
+    private long _generation;
+
+    /**
+     * URIs created by open transactions, with whether their subtree is
+     * concerned, to be invalidated again at commit.
+     */
+    private final Map<ITransaction, Map<String, Boolean>> _created = new IdentityHashMap<>();
+
+    /**
+     * @param delegate
+     *      the store to cache
+     * @param maxEntries
+     *      maximum number of missing URIs in the cache
+     * @param timeToLive
+     *      milliseconds after which a missing URI is looked up again in the
+     *      backend
+     */
+    public NegativeCachingStore(final IWebdavStore delegate,
+            final int maxEntries, final long timeToLive) {
+        super(delegate);
+        _maxEntries = maxEntries;
+        _timeToLive = timeToLive;
+    }
+
+    @Override
+    public StoredObject getStoredObject(final ITransaction transaction, final String uri) {
+        final String path = normalize(uri);
+        final long generation;
+        synchronized (this) {
+            final Long expires = _missing.get(path);
+            if (expires != null) {
+                if (expires > System.currentTimeMillis()) {
+                    return null;
+                }
+                _missing.remove(path);
+            }
+            generation = _generation;
+        }
+        final StoredObject so = super.getStoredObject(transaction, uri);
+        if (so == null) {
+            synchronized (this) {
+                if (generation == _generation) {
+                    _missing.put(path, System.currentTimeMillis()
+                            + _timeToLive);
+                    if (_missing.size() > _maxEntries) {
+                        final Iterator<Long> eldest = _missing.values()
+                                .iterator();
+                        eldest.next();
+                        eldest.remove();
+                    }
+                }
+            }
+        }
+        return so;
+    }
+
+    @Override
+    public void commit(final ITransaction transaction) {
+        try {
+            super.commit(transaction);
+        } finally {
+            final Map<String, Boolean> created;
+            synchronized (this) {
+                created = _created.remove(transaction);
+            }
+            if (created != null) {
+                for (final Map.Entry<String, Boolean> uri : created.entrySet()) {
+                    invalidate(null, uri.getKey(), uri.getValue());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void rollback(final ITransaction transaction) {
+        try {
+            super.rollback(transaction);
+        } finally {
+            synchronized (this) {
+                _created.remove(transaction);
+            }
+            clear();
+        }
+    }
+
+    @Override
+    public void createFolder(final ITransaction transaction, final String folderUri) {
+        try {
+            super.createFolder(transaction, folderUri);
+        } finally {
+            invalidate(transaction, folderUri, false);
+        }
+    }
+
+    @Override
+    public void createResource(final ITransaction transaction, final String resourceUri) {
+        try {
+            super.createResource(transaction, resourceUri);
+        } finally {
+            invalidate(transaction, resourceUri, false);
+        }
+    }
+
+    @Override
+    public long setResourceContent(final ITransaction transaction,
+            final String resourceUri, final InputStream content,
+            final String contentType, final String characterEncoding) {
+        try {
+            return super.setResourceContent(transaction, resourceUri, content,
+                    contentType, characterEncoding);
+        } finally {
+            invalidate(transaction, resourceUri, false);
+        }
+    }
+
+    @Override
+    public long setResourceContent(final ITransaction transaction,
+            final String resourceUri, final InputStream content,
+            final String contentType, final String characterEncoding,
+            final long contentLength) {
+        try {
+            return super.setResourceContent(transaction, resourceUri, content,
+                    contentType, characterEncoding, contentLength);
+        } finally {
+            invalidate(transaction, resourceUri, false);
+        }
+    }
+
+    @Override
+    public ResourceWriter openResourceWriter(final ITransaction transaction,
+            final String resourceUri, final String contentType,
+            final String characterEncoding, final long contentLength) {
+        return onFinish(super.openResourceWriter(transaction, resourceUri,
+                contentType, characterEncoding, contentLength),
+                () -> invalidate(transaction, resourceUri, false));
+    }
+
+    @Override
+    public boolean moveObject(final ITransaction transaction,
+            final String sourceUri, final String destinationUri) {
+        try {
+            return super.moveObject(transaction, sourceUri, destinationUri);
+        } finally {
+            invalidate(transaction, destinationUri, true);
+        }
+    }
+
+    @Override
+    public boolean copyObject(final ITransaction transaction,
+            final String sourceUri, final String destinationUri) {
+        try {
+            return super.copyObject(transaction, sourceUri, destinationUri);
+        } finally {
+            invalidate(transaction, destinationUri, false);
+        }
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public synchronized void clear() {
+        _generation++;
+        _missing.clear();
+    }
+
+    /**
+     * @param transaction
+     *      the transaction which created <code>uri</code>, so that it is
+     *      invalidated again when the transaction commits, <code>null</code>
+     *      if there is none
+     */
+    private synchronized void invalidate(final ITransaction transaction,
+            final String uri, final boolean subtree) {
+        _generation++;
+        final String path = normalize(uri);
+        if (transaction != null) {
+            Map<String, Boolean> created = _created.get(transaction);
+            if (created == null) {
+                created = new LinkedHashMap<>();
+                _created.put(transaction, created);
+            }
+            created.merge(path, subtree, Boolean::logicalOr);
+        }
+        _missing.remove(path);
+        if (subtree) {
+            final String prefix = path.equals("/") ? path : path + "/";
+            final Iterator<Map.Entry<String, Long>> missing = _missing
+                    .entrySet().iterator();
+            while (missing.hasNext()) {
+                if (missing.next().getKey().startsWith(prefix)) {
+                    missing.remove();
+                }
+            }
+        }
+    }
+}
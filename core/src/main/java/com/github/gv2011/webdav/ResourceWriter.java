@@ -0,0 +1,55 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav;
+
+import com.github.gv2011.webdav.exceptions.WebdavException;
+
+/**
+ * Handle for writing the content of a resource piece by piece, as returned
+ * by {@link IWebdavStore#openResourceWriter}. Exactly one of
+ * {@link #finish()} and {@link #abort()} has to be called.
+ */
+public interface ResourceWriter {
+
+    /**
+     * Appends bytes to the content.
+     * 
+     * @param b
+     *      the bytes
+     * @param off
+     *      the start of the bytes in <code>b</code>
+     * @param len
+     *      the number of bytes
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    void write(byte[] b, int off, int len);
+
+    /**
+     * Stores the content written so far as the content of the resource.
+     * 
+     * @return length of the resource
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    long finish();
+
+    /**
+     * Discards the writer. Stores which do not write to the resource
+     * directly leave the previous content unchanged.
+     */
+    void abort();
+}
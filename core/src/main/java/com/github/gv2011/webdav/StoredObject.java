@@ -28,9 +28,31 @@ public class StoredObject {
     private Date creationDate;
     private long contentLength;
     private String  mimeType;
+    private String  eTag;
 
     private boolean isNullRessource;
 
+    public StoredObject() {
+    }
+
+    /**
+     * Creates a copy of a StoredObject
+     * 
+     * @param so
+     *      the StoredObject to copy
+     */
+    public StoredObject(StoredObject so) {
+        this.isFolder = so.isFolder;
+        this.lastModified = so.lastModified == null ? null : new Date(
+                so.lastModified.getTime());
+        this.creationDate = so.creationDate == null ? null : new Date(
+                so.creationDate.getTime());
+        this.contentLength = so.contentLength;
+        this.mimeType = so.mimeType;
+        this.eTag = so.eTag;
+        this.isNullRessource = so.isNullRessource;
+    }
+
     /**
      * Determines whether the StoredObject is a folder or a resource
      * 
@@ -139,6 +161,7 @@ public class StoredObject {
         // this.content = null;
         this.contentLength = 0;
         this.mimeType= null;
+        this.eTag = null;
     }
 
     /**
@@ -162,4 +185,26 @@ public class StoredObject {
         this.mimeType = mimeType;
     }
 
+    /**
+     * Retrieve the entity tag of the content, e.g. a hash of it.
+     * Can also return NULL if the store does not provide one.
+     * In that case a weak entity tag is derived from the length
+     * and the date of the last modification
+     *
+     * @return the entity tag, without quotes
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Set the entity tag of the content. It must change whenever the
+     * content changes.
+     * 
+     * @param eTag the entity tag to set, without quotes
+     */
+    public void setETag(String eTag) {
+        this.eTag = eTag;
+    }
+
 }
@@ -0,0 +1,119 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Transaction of one request, as handed out by {@link MemoizingStore}. It
+ * wraps the transaction of the store behind it, and remembers the
+ * StoredObjects and children names the request has read, until the request
+ * changes them itself.
+ */
+public class Transaction implements ITransaction {
+
+    private final Principal _principal;
+    private final ITransaction _storeTransaction;
+
+    /**
+     * StoredObjects by normalized URI, <code>null</code> for missing objects.
+     */
+    private final Map<String, StoredObject> _storedObjects = new HashMap<>();
+    private final Map<String, String[]> _childrenNames = new HashMap<>();
+
+    public Transaction(final Principal principal,
+            final ITransaction storeTransaction) {
+        _principal = principal;
+        _storeTransaction = storeTransaction;
+    }
+
+    @Override
+    public Principal getPrincipal() {
+        return _principal;
+    }
+
+    /**
+     * @return the transaction of the store behind the MemoizingStore, may be
+     *  <code>null</code>
+     */
+    public ITransaction getStoreTransaction() {
+        return _storeTransaction;
+    }
+
+    synchronized boolean hasStoredObject(final String path) {
+        return _storedObjects.containsKey(path);
+    }
+
+    /**
+     * @return the StoredObject as the store returned it, not a copy, so that
+     *  changes the handlers make to it are seen by later lookups
+     */
+    synchronized StoredObject getStoredObject(final String path) {
+        return _storedObjects.get(path);
+    }
+
+    synchronized void putStoredObject(final String path, final StoredObject so) {
+        _storedObjects.put(path, so);
+    }
+
+    synchronized String[] getChildrenNames(final String path) {
+        final String[] children = _childrenNames.get(path);
+        return children == null ? null : children.clone();
+    }
+
+    synchronized void putChildrenNames(final String path, final String[] children) {
+        _childrenNames.put(path, children.clone());
+    }
+
+    /**
+     * Forgets what has been read about <code>path</code>.
+     *
+     * @param subtree
+     *      whether all descendants are forgotten as well
+     * @param parent
+     *      whether the children names of the parent are forgotten as well
+     */
+    synchronized void forget(final String path, final boolean subtree,
+            final boolean parent) {
+        _storedObjects.remove(path);
+        _childrenNames.remove(path);
+        if (subtree) {
+            final String prefix = path.equals("/") ? path : path + "/";
+            forget(_storedObjects.keySet().iterator(), prefix);
+            forget(_childrenNames.keySet().iterator(), prefix);
+        }
+        if (parent && !path.equals("/")) {
+            final int slash = path.lastIndexOf('/');
+            _childrenNames.remove(slash == 0 ? "/" : path.substring(0, slash));
+        }
+    }
+
+    synchronized void forgetAll() {
+        _storedObjects.clear();
+        _childrenNames.clear();
+    }
+
+    private static void forget(final Iterator<String> paths, final String prefix) {
+        while (paths.hasNext()) {
+            if (paths.next().startsWith(prefix)) {
+                paths.remove();
+            }
+        }
+    }
+}
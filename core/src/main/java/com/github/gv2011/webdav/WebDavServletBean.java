@@ -4,9 +4,15 @@ import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -16,6 +22,7 @@ import com.github.gv2011.webdav.exceptions.UnauthenticatedException;
 import com.github.gv2011.webdav.exceptions.WebdavException;
 import com.github.gv2011.webdav.fromcatalina.MD5Encoder;
 import com.github.gv2011.webdav.locking.ResourceLocks;
+import com.github.gv2011.webdav.methods.AbstractMethod;
 import com.github.gv2011.webdav.methods.DoCopy;
 import com.github.gv2011.webdav.methods.DoDelete;
 import com.github.gv2011.webdav.methods.DoGet;
@@ -29,6 +36,7 @@ import com.github.gv2011.webdav.methods.DoPropfind;
 import com.github.gv2011.webdav.methods.DoProppatch;
 import com.github.gv2011.webdav.methods.DoPut;
 import com.github.gv2011.webdav.methods.DoUnlock;
+import com.github.gv2011.webdav.methods.PropfindCache;
 
 public class WebDavServletBean extends HttpServlet {
 
@@ -46,9 +54,23 @@ public class WebDavServletBean extends HttpServlet {
   protected static final MD5Encoder              MD5_ENCODER = new MD5Encoder();
 
   private static final boolean                   READ_ONLY   = false;
+
+  /**
+   * Methods which change neither resources nor locks.
+   */
+  private static final Set<String>               SAFE_METHODS = new HashSet<>(
+      Arrays.asList("GET", "HEAD", "OPTIONS", "PROPFIND"));
+
   protected ResourceLocks                        _resLocks;
   protected IWebdavStore                         _store;
   private final HashMap<String, IMethodExecutor> _methodMap  = new HashMap<>();
+  private boolean                                _asyncGet;
+  private boolean                                _asyncPut;
+  private long                                   _asyncTimeout = AbstractMethod.DEFAULT_ASYNC_TIMEOUT;
+  private boolean                                _propfindFiniteDepth;
+  private int                                    _propfindMaxNodes;
+  private long                                   _propfindTimeBudget;
+  private PropfindCache                          _propfindCache;
 
   public WebDavServletBean() {
     _resLocks = new ResourceLocks();
@@ -64,7 +86,8 @@ public class WebDavServletBean extends HttpServlet {
       final String insteadOf404, final int nocontentLenghHeaders,
       final boolean lazyFolderCreationOnPut) throws ServletException {
 
-    _store = store;
+    // remembers metadata for the duration of each request
+    _store = new MemoizingStore(store);
 
     final IMimeTyper mimeTyper = (transaction, path) -> {
       String retVal = _store.getStoredObject(transaction, path).getMimeType();
@@ -74,26 +97,115 @@ public class WebDavServletBean extends HttpServlet {
       return retVal;
     };
 
-    register("GET", new DoGet(store, dftIndexFile, insteadOf404, _resLocks,
-        mimeTyper, nocontentLenghHeaders));
-    register("HEAD", new DoHead(store, dftIndexFile, insteadOf404,
+    final DoGet doGet = new DoGet(_store, dftIndexFile, insteadOf404,
+        _resLocks, mimeTyper, nocontentLenghHeaders);
+    doGet.setAsync(_asyncGet);
+    doGet.setAsyncTimeout(_asyncTimeout);
+    register("GET", doGet);
+    register("HEAD", new DoHead(_store, dftIndexFile, insteadOf404,
         _resLocks, mimeTyper, nocontentLenghHeaders));
-    final DoDelete doDelete = (DoDelete) register("DELETE", new DoDelete(store,
+    final DoDelete doDelete = (DoDelete) register("DELETE", new DoDelete(_store,
         _resLocks, READ_ONLY));
-    final DoCopy doCopy = (DoCopy) register("COPY", new DoCopy(store, _resLocks,
+    final DoCopy doCopy = (DoCopy) register("COPY", new DoCopy(_store, _resLocks,
         doDelete, READ_ONLY));
-    register("LOCK", new DoLock(store, _resLocks, READ_ONLY));
-    register("UNLOCK", new DoUnlock(store, _resLocks, READ_ONLY));
-    register("MOVE", new DoMove(_resLocks, doDelete, doCopy, READ_ONLY));
-    register("MKCOL", new DoMkcol(store, _resLocks, READ_ONLY));
-    register("OPTIONS", new DoOptions(store, _resLocks));
-    register("PUT", new DoPut(store, _resLocks, READ_ONLY,
-        lazyFolderCreationOnPut));
-    register("PROPFIND", new DoPropfind(store, _resLocks, mimeTyper));
-    register("PROPPATCH", new DoProppatch(store, _resLocks, READ_ONLY));
+    register("LOCK", new DoLock(_store, _resLocks, READ_ONLY));
+    register("UNLOCK", new DoUnlock(_store, _resLocks, READ_ONLY));
+    register("MOVE", new DoMove(_resLocks, doCopy, READ_ONLY));
+    register("MKCOL", new DoMkcol(_store, _resLocks, READ_ONLY));
+    register("OPTIONS", new DoOptions(_store, _resLocks));
+    final DoPut doPut = new DoPut(_store, _resLocks, READ_ONLY,
+        lazyFolderCreationOnPut);
+    doPut.setAsync(_asyncPut);
+    doPut.setAsyncTimeout(_asyncTimeout);
+    register("PUT", doPut);
+    final DoPropfind doPropfind = new DoPropfind(_store, _resLocks, mimeTyper);
+    doPropfind.setLimits(_propfindFiniteDepth, _propfindMaxNodes,
+        _propfindTimeBudget);
+    doPropfind.setCache(_propfindCache);
+    register("PROPFIND", doPropfind);
+    register("PROPPATCH", new DoProppatch(_store, _resLocks, READ_ONLY));
     register("*NO*IMPL*", new DoNotImplemented(READ_ONLY));
   }
 
+  /**
+   * Sets whether GET writes resources asynchronously, so that slow clients do
+   * not hold a container thread. Must be called before
+   * {@link #init(IWebdavStore, String, String, int, boolean)}, and the
+   * servlet must be declared with async-supported.
+   *
+   * @param asyncGet
+   *      <code>true</code> to write asynchronously
+   */
+  public void setAsyncGet(final boolean asyncGet) {
+    _asyncGet = asyncGet;
+  }
+
+  /**
+   * Sets whether PUT reads request bodies asynchronously into stores which
+   * support {@link IWebdavStore#openResourceWriter}, so that slow uploads do
+   * not hold a container thread. Must be called before
+   * {@link #init(IWebdavStore, String, String, int, boolean)}, and the
+   * servlet must be declared with async-supported.
+   *
+   * @param asyncPut
+   *      <code>true</code> to read asynchronously
+   */
+  public void setAsyncPut(final boolean asyncPut) {
+    _asyncPut = asyncPut;
+  }
+
+  /**
+   * Sets the timeout of asynchronous GET and PUT requests, after which their
+   * locks are released and the transaction of a PUT is rolled back. It bounds the
+   * whole transfer, so it must allow for the largest resources at the
+   * slowest expected rate. Must be called before
+   * {@link #init(IWebdavStore, String, String, int, boolean)}.
+   *
+   * @param asyncTimeout
+   *      milliseconds, {@link AbstractMethod#DEFAULT_ASYNC_TIMEOUT} by default
+   */
+  public void setAsyncTimeout(final long asyncTimeout) {
+    _asyncTimeout = asyncTimeout;
+  }
+
+  /**
+   * Limits the resources a PROPFIND may walk, see
+   * {@link DoPropfind#setLimits(boolean, int, long)}. Must be called before
+   * {@link #init(IWebdavStore, String, String, int, boolean)}.
+   *
+   * @param finiteDepth
+   *      <code>true</code> to refuse Depth: infinity
+   * @param maxNodes
+   *      maximum number of resources in a response, 0 for no limit
+   * @param timeBudget
+   *      milliseconds after which a response is truncated, 0 for no limit
+   */
+  public void setPropfindLimits(final boolean finiteDepth, final int maxNodes,
+      final long timeBudget) {
+    _propfindFiniteDepth = finiteDepth;
+    _propfindMaxNodes = maxNodes;
+    _propfindTimeBudget = timeBudget;
+  }
+
+  /**
+   * Enables a cache for rendered PROPFIND responses, see
+   * {@link PropfindCache}. Must be called before
+   * {@link #init(IWebdavStore, String, String, int, boolean)}. The cache is
+   * invalidated by every other method than GET, HEAD, OPTIONS and PROPFIND
+   * executed by this servlet, so it must not be used if the store is changed
+   * by other servlets or applications which do not touch the date of last
+   * modification of the folders, unless the time to live is short.
+   *
+   * @param maxEntries
+   *      maximum number of responses in the cache, 0 for no cache
+   * @param timeToLive
+   *      milliseconds after which a response is rendered again
+   */
+  public void setPropfindCache(final int maxEntries, final long timeToLive) {
+    _propfindCache = maxEntries > 0 ? new PropfindCache(maxEntries,
+        timeToLive) : null;
+  }
+
   @Override
   public void destroy() {
     if (_store != null)
@@ -135,7 +247,21 @@ public class WebDavServletBean extends HttpServlet {
               .get("*NO*IMPL*");
         }
 
-        methodExecutor.execute(transaction, req, resp);
+        try {
+          methodExecutor.execute(transaction, req, resp);
+        } finally {
+          invalidatePropfindCache(methodName);
+        }
+
+        final AsyncContext asyncContext = (AsyncContext) req
+            .getAttribute(AbstractMethod.ASYNC_CONTEXT_ATTRIBUTE);
+        if (asyncContext != null) {
+          // the handler completes the request, finish the transaction then
+          asyncContext.addListener(new TransactionCompletion(transaction,
+              req, methodName));
+          needRollback = false;
+          return;
+        }
 
         _store.commit(transaction);
         /**
@@ -184,6 +310,66 @@ public class WebDavServletBean extends HttpServlet {
 
   }
 
+  /**
+   * Commits the transaction of an asynchronous request when it completes, or
+   * rolls it back if it failed. It is added after the listener of the method
+   * handler, which is notified first and marks the request with
+   * {@link AbstractMethod#ASYNC_FAILED_ATTRIBUTE} if the body was not
+   * completely read. Safe methods are always committed: they have nothing to
+   * roll back, and rolling back clears the caches of the store.
+   */
+  private final class TransactionCompletion implements AsyncListener {
+
+    private final ITransaction       _transaction;
+    private final HttpServletRequest _request;
+    private final String             _methodName;
+    private volatile boolean         _failed;
+
+    private TransactionCompletion(final ITransaction transaction,
+        final HttpServletRequest request, final String methodName) {
+      _transaction = transaction;
+      _request = request;
+      _methodName = methodName;
+    }
+
+    @Override
+    public void onComplete(final AsyncEvent event) {
+      try {
+        if (!SAFE_METHODS.contains(_methodName)
+            && (_failed || _request
+                .getAttribute(AbstractMethod.ASYNC_FAILED_ATTRIBUTE) != null)) {
+          _store.rollback(_transaction);
+        } else {
+          _store.commit(_transaction);
+        }
+      } finally {
+        // the content was written after the method returned
+        invalidatePropfindCache(_methodName);
+      }
+    }
+
+    @Override
+    public void onTimeout(final AsyncEvent event) {
+      _failed = true;
+    }
+
+    @Override
+    public void onError(final AsyncEvent event) {
+      _failed = true;
+    }
+
+    @Override
+    public void onStartAsync(final AsyncEvent event) {
+      // nothing to do
+    }
+  }
+
+  private void invalidatePropfindCache(final String methodName) {
+    if (_propfindCache != null && !SAFE_METHODS.contains(methodName)) {
+      _propfindCache.invalidate();
+    }
+  }
+
   /**
    * Method that permit to customize the way user information are extracted from
    * the request, default use JAAS
@@ -48,7 +48,40 @@ public class WebdavServlet extends WebDavServletBean {
 
         final File root = getFileRoot();
 
-        final IWebdavStore webdavStore = constructStore(clazzName, root);
+        IWebdavStore webdavStore = constructStore(clazzName, root);
+
+        if (webdavStore instanceof LocalFileSystemStore) {
+            final LocalFileSystemStore localStore = (LocalFileSystemStore) webdavStore;
+            localStore.setRemoveParallelism(getIntInitParameter("remove-parallelism"));
+            localStore.setListParallelism(getIntInitParameter("list-parallelism"));
+            localStore.setStagedWrites("1".equals(getInitParameter("staged-writes")));
+            localStore.setMappedReads(getLongInitParameter("mapped-read-max-size"),
+                    getLongInitParameter("mapped-read-cache-size"));
+        }
+
+        final long metadataCacheSize = getLongInitParameter("metadata-cache-size");
+        if (metadataCacheSize > 0) {
+            final long metadataCacheTtl = getLongInitParameter("metadata-cache-ttl");
+            webdavStore = new CachingStore(webdavStore, metadataCacheSize,
+                    metadataCacheTtl > 0 ? metadataCacheTtl : 1000);
+        }
+
+        final long contentCacheSize = getLongInitParameter("content-cache-size");
+        if (contentCacheSize > 0) {
+            // validates cached contents through the metadata cache
+            final long maxObjectSize = getLongInitParameter("content-cache-max-object-size");
+            webdavStore = new ContentCachingStore(webdavStore,
+                    maxObjectSize > 0 ? maxObjectSize : 1024 * 1024,
+                    contentCacheSize);
+        }
+
+        final int negativeCacheSize = getIntInitParameter("negative-cache-size");
+        if (negativeCacheSize > 0) {
+            final long negativeCacheTtl = getLongInitParameter("negative-cache-ttl");
+            webdavStore = new NegativeCachingStore(webdavStore,
+                    negativeCacheSize, negativeCacheTtl > 0 ? negativeCacheTtl
+                            : 1000);
+        }
 
         final boolean lazyFolderCreationOnPut = getInitParameter("lazyFolderCreationOnPut") != null
                 && getInitParameter("lazyFolderCreationOnPut").equals("1");
@@ -58,6 +91,19 @@ public class WebdavServlet extends WebDavServletBean {
 
         final int noContentLengthHeader = getIntInitParameter("no-content-length-headers");
 
+        setAsyncGet("1".equals(getInitParameter("async-get")));
+        setAsyncPut("1".equals(getInitParameter("async-put")));
+        final long asyncTimeout = getLongInitParameter("async-timeout");
+        if (asyncTimeout > 0) {
+            setAsyncTimeout(asyncTimeout);
+        }
+        setPropfindLimits("1".equals(getInitParameter("propfind-finite-depth")),
+                getIntInitParameter("propfind-max-nodes"),
+                getLongInitParameter("propfind-time-budget"));
+        final long propfindCacheTtl = getLongInitParameter("propfind-cache-ttl");
+        setPropfindCache(getIntInitParameter("propfind-cache-size"),
+                propfindCacheTtl > 0 ? propfindCacheTtl : 10000);
+
         super.init(webdavStore, dftIndexFile, insteadOf404,
                 noContentLengthHeader, lazyFolderCreationOnPut);
     }
@@ -67,17 +113,28 @@ public class WebdavServlet extends WebDavServletBean {
                 .parseInt(getInitParameter(key));
     }
 
+    private long getLongInitParameter(final String key) {
+        return getInitParameter(key) == null ? -1 : Long
+                .parseLong(getInitParameter(key));
+    }
+
     protected IWebdavStore constructStore(final String clazzName, final File root) {
         IWebdavStore webdavStore;
         try {
             final Class<?> clazz = WebdavServlet.class.getClassLoader().loadClass(
                     clazzName);
 
-            final Constructor<?> ctor = clazz
-                    .getConstructor(new Class[] { File.class });
+            Constructor<?> ctor;
+            try {
+                ctor = clazz.getConstructor(new Class[] { File.class });
+            } catch (final NoSuchMethodException e) {
+                // stores without a root folder, e.g. MemoryStore
+                ctor = null;
+            }
 
-            webdavStore = (IWebdavStore) ctor
-                    .newInstance(new Object[] { root });
+            webdavStore = (IWebdavStore) (ctor != null ? ctor
+                    .newInstance(new Object[] { root }) : clazz
+                    .getDeclaredConstructor().newInstance());
         } catch (final Exception e) {
             e.printStackTrace();
             throw new RuntimeException("some problem making store component", e);
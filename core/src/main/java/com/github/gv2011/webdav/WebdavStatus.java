@@ -200,6 +200,13 @@ public class WebdavStatus {
      */
     public static final int SC_LOCKED = 423;
 
+    /**
+     * Status code (507) indicating that the server is unable to store the
+     * representation needed to complete the request, e.g. because a
+     * PROPFIND response was truncated.
+     */
+    public static final int SC_INSUFFICIENT_STORAGE = 507;
+
     // ------------------------------------------------------------ Initializer
 
     static {
@@ -232,6 +239,7 @@ public class WebdavStatus {
                 "Insufficient Space On Resource");
         addStatusCodeMap(SC_METHOD_FAILURE, "Method Failure");
         addStatusCodeMap(SC_LOCKED, "Locked");
+        addStatusCodeMap(SC_INSUFFICIENT_STORAGE, "Insufficient Storage");
     }
 
     // --------------------------------------------------------- Public Methods
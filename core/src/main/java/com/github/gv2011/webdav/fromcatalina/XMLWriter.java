@@ -45,12 +45,18 @@ public class XMLWriter {
      */
     public static final int NO_CONTENT = 2;
 
+    /**
+     * Number of characters buffered by a streaming writer before they are
+     * passed on to the underlying writer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
     // ----------------------------------------------------- Instance Variables
 
     /**
      * Buffer.
      */
-    protected StringBuffer _buffer = new StringBuffer();
+    protected StringBuilder _buffer = new StringBuilder();
 
     /**
      * Writer.
@@ -67,6 +73,18 @@ public class XMLWriter {
      */
     protected boolean _isRootElement = true;
 
+    /**
+     * Size at which the buffer is passed on to the writer, 0 if everything is
+     * buffered until {@link #sendData()}
+     */
+    protected int _bufferSize = 0;
+
+    /**
+     * First error of the writer while streaming, thrown by
+     * {@link #sendData()}
+     */
+    protected IOException _error = null;
+
     // ----------------------------------------------------------- Constructors
 
     /**
@@ -84,6 +102,18 @@ public class XMLWriter {
         _namespaces = namespaces;
     }
 
+    /**
+     * Constructor for a streaming writer, which passes the XML on to the
+     * writer whenever more than <code>bufferSize</code> characters are
+     * buffered, so its memory use doesn't depend on the size of the document.
+     * {@link #sendData()} has to be called at the end.
+     */
+    public XMLWriter(final Writer writer, final Map<String, String> namespaces,
+            final int bufferSize) {
+        this(writer, namespaces);
+        _bufferSize = bufferSize;
+    }
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -172,6 +202,7 @@ public class XMLWriter {
             _buffer.append("<" + name + nsdecl + "/>");
             break;
         }
+        stream();
     }
 
     /**
@@ -182,6 +213,7 @@ public class XMLWriter {
      */
     public void writeText(final String text) {
         _buffer.append(text);
+        stream();
     }
 
     /**
@@ -192,6 +224,7 @@ public class XMLWriter {
      */
     public void writeData(final String data) {
         _buffer.append("<![CDATA[" + data + "]]>");
+        stream();
     }
 
     /**
@@ -205,10 +238,30 @@ public class XMLWriter {
      * Send data and reinitializes buffer.
      */
     public void sendData() throws IOException {
+        if (_error != null) {
+            throw _error;
+        }
         if (_writer != null) {
-            _writer.write(_buffer.toString());
+            _writer.append(_buffer);
             _writer.flush();
-            _buffer = new StringBuffer();
+            _buffer.setLength(0);
+        }
+    }
+
+    /**
+     * Passes the buffer on to the writer if it exceeds the buffer size of a
+     * streaming writer.
+     */
+    protected void stream() {
+        if (_bufferSize > 0 && _buffer.length() > _bufferSize) {
+            if (_writer != null && _error == null) {
+                try {
+                    _writer.append(_buffer);
+                } catch (final IOException e) {
+                    _error = e;
+                }
+            }
+            _buffer.setLength(0);
         }
     }
 
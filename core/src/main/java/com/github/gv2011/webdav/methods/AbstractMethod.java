@@ -27,15 +27,12 @@ import java.util.Hashtable;
 import java.util.Locale;
 import java.util.TimeZone;
 
-import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 
 import com.github.gv2011.webdav.IMethodExecutor;
 import com.github.gv2011.webdav.ITransaction;
+import com.github.gv2011.webdav.IWebdavStore;
 import com.github.gv2011.webdav.StoredObject;
 import com.github.gv2011.webdav.WebdavStatus;
 import com.github.gv2011.webdav.exceptions.LockFailedException;
@@ -111,6 +108,24 @@ public abstract class AbstractMethod implements IMethodExecutor {
      */
     protected static final int TEMP_TIMEOUT = 10;
 
+    /**
+     * request attribute holding the AsyncContext, if a method handler writes
+     * the response asynchronously. The transaction must then be finished
+     * when the request completes.
+     */
+    public static final String ASYNC_CONTEXT_ATTRIBUTE = "com.github.gv2011.webdav.asyncContext";
+
+    /**
+     * request attribute set when the body of an asynchronous request was not
+     * completely read. The transaction must then be rolled back.
+     */
+    public static final String ASYNC_FAILED_ATTRIBUTE = "com.github.gv2011.webdav.asyncFailed";
+
+    /**
+     * Default timeout of asynchronous requests, in milliseconds
+     */
+    public static final long DEFAULT_ASYNC_TIMEOUT = 300000;
+
     
     public static String lastModifiedDateFormat(final Date date) {
         DateFormat df = thLastmodifiedDateFormat.get();
@@ -203,22 +218,6 @@ public abstract class AbstractMethod implements IMethodExecutor {
         return path;
     }
 
-    /**
-     * Return JAXP document builder instance.
-     */
-    protected DocumentBuilder getDocumentBuilder() throws ServletException {
-        DocumentBuilder documentBuilder = null;
-        DocumentBuilderFactory documentBuilderFactory = null;
-        try {
-            documentBuilderFactory = DocumentBuilderFactory.newInstance();
-            documentBuilderFactory.setNamespaceAware(true);
-            documentBuilder = documentBuilderFactory.newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            throw new ServletException("jaxp failed");
-        }
-        return documentBuilder;
-    }
-
     /**
      * reads the depth header from the request and returns it as a int
      * 
@@ -250,15 +249,19 @@ public abstract class AbstractMethod implements IMethodExecutor {
     }
 
     /**
-     * Get the ETag associated with a file.
+     * Get the ETag associated with a file. A strong ETag is returned if the
+     * store provides one, otherwise a weak one is derived.
      * 
      * @param StoredObject
-     *      StoredObject to get resourceLength, lastModified and a hashCode of
-     *      StoredObject
+     *      StoredObject to get the ETag or resourceLength and lastModified of
      * @return the ETag
      */
     protected String getETag(StoredObject so) {
 
+        if (so != null && so.isResource() && so.getETag() != null) {
+            return "\"" + so.getETag() + "\"";
+        }
+
         String resourceLength = "";
         String lastModified = "";
 
@@ -271,6 +274,79 @@ public abstract class AbstractMethod implements IMethodExecutor {
 
     }
 
+    /**
+     * Evaluates the conditional headers of the request, see
+     * {@link Preconditions}. The resource is only looked up if the request
+     * has conditional headers. If a precondition fails, the status is sent.
+     * 
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param req
+     *      Servlet request
+     * @param resp
+     *      Servlet response
+     * @param store
+     *      the store to look the resource up in
+     * @param path
+     *      path to the resource
+     * @param safe
+     *      <code>true</code> for GET and HEAD
+     * @return true if the method is to be performed
+     * @throws IOException
+     */
+    protected boolean checkPreconditions(ITransaction transaction,
+            HttpServletRequest req, HttpServletResponse resp,
+            IWebdavStore store, String path, boolean safe) throws IOException {
+        Preconditions preconditions = Preconditions.of(req);
+        if (preconditions == null) {
+            return true;
+        }
+        return checkPreconditions(preconditions, resp, store
+                .getStoredObject(transaction, path), safe);
+    }
+
+    /**
+     * Evaluates the conditional headers of the request against a resource
+     * which has been looked up already. If a precondition fails, the status
+     * is sent.
+     * 
+     * @param req
+     *      Servlet request
+     * @param resp
+     *      Servlet response
+     * @param so
+     *      the resource, <code>null</code> if it doesn't exist
+     * @param safe
+     *      <code>true</code> for GET and HEAD
+     * @return true if the method is to be performed
+     * @throws IOException
+     */
+    protected boolean checkPreconditions(HttpServletRequest req,
+            HttpServletResponse resp, StoredObject so, boolean safe)
+            throws IOException {
+        Preconditions preconditions = Preconditions.of(req);
+        return preconditions == null
+                || checkPreconditions(preconditions, resp, so, safe);
+    }
+
+    private boolean checkPreconditions(Preconditions preconditions,
+            HttpServletResponse resp, StoredObject so, boolean safe)
+            throws IOException {
+        String eTag = getETag(so);
+        int status = preconditions.evaluate(so, eTag, safe);
+        if (status == Preconditions.MET) {
+            return true;
+        }
+        if (status == WebdavStatus.SC_NOT_MODIFIED) {
+            resp.setHeader("ETag", eTag);
+            resp.setStatus(status);
+        } else {
+            resp.sendError(status);
+        }
+        return false;
+    }
+
     protected String[] getLockIdFromIfHeader(HttpServletRequest req) {
         String[] ids = new String[2];
         String id = req.getHeader("If");
@@ -408,7 +484,9 @@ public abstract class AbstractMethod implements IMethodExecutor {
             HashMap<String, String> namespaces = new HashMap<String, String>();
             namespaces.put("DAV:", "D");
 
-            XMLWriter generatedXML = new XMLWriter(namespaces);
+            Writer writer = resp.getWriter();
+            XMLWriter generatedXML = new XMLWriter(writer, namespaces,
+                    XMLWriter.DEFAULT_BUFFER_SIZE);
             generatedXML.writeXMLHeader();
 
             generatedXML.writeElement("DAV::multistatus", XMLWriter.OPENING);
@@ -447,8 +525,7 @@ public abstract class AbstractMethod implements IMethodExecutor {
 
             generatedXML.writeElement("DAV::multistatus", XMLWriter.CLOSING);
 
-            Writer writer = resp.getWriter();
-            writer.write(generatedXML.toString());
+            generatedXML.sendData();
             writer.close();
         }
     }
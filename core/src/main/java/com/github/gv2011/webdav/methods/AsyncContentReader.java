@@ -0,0 +1,166 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav.methods;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import com.github.gv2011.webdav.ResourceWriter;
+import com.github.gv2011.webdav.WebdavStatus;
+import com.github.gv2011.webdav.exceptions.WebdavException;
+
+/**
+ * Reads the body of a non-blocking request whenever data has arrived and
+ * writes it into the store, so that no container thread waits for a slow
+ * upload. Finishes the store writer at the end of the body, aborts it on an
+ * error, and then completes the request and releases what it held. If the
+ * body was not stored completely, the request is marked with
+ * {@link AbstractMethod#ASYNC_FAILED_ATTRIBUTE}.
+ */
+class AsyncContentReader implements ReadListener, AsyncListener {
+
+    private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory
+            .getLogger(AsyncContentReader.class);
+
+    private final AsyncContext _asyncContext;
+    private final ServletInputStream _in;
+    private final ResourceWriter _writer;
+    private final HttpServletResponse _resp;
+    private final Runnable _onComplete;
+    private final byte[] _copyBuffer;
+    private final AtomicBoolean _writerClosed = new AtomicBoolean();
+    private final AtomicBoolean _done = new AtomicBoolean();
+
+    /**
+     * @param asyncContext
+     *      the started asynchronous request
+     * @param in
+     *      the body of the request
+     * @param writer
+     *      receives the body
+     * @param resp
+     *      the response, whose status is set to 500 if the body can not be
+     *      stored
+     * @param onComplete
+     *      run once when the request completes, in any way
+     * @param bufferSize
+     *      size of the copy buffer
+     */
+    AsyncContentReader(final AsyncContext asyncContext,
+            final ServletInputStream in, final ResourceWriter writer,
+            final HttpServletResponse resp, final Runnable onComplete,
+            final int bufferSize) {
+        _asyncContext = asyncContext;
+        _in = in;
+        _writer = writer;
+        _resp = resp;
+        _onComplete = onComplete;
+        _copyBuffer = new byte[bufferSize];
+    }
+
+    @Override
+    public void onDataAvailable() throws IOException {
+        try {
+            int read;
+            while (_in.isReady()
+                    && (read = _in.read(_copyBuffer, 0, _copyBuffer.length)) != -1) {
+                _writer.write(_copyBuffer, 0, read);
+            }
+        } catch (final WebdavException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onAllDataRead() {
+        if (_writerClosed.compareAndSet(false, true)) {
+            try {
+                _writer.finish();
+            } catch (final WebdavException e) {
+                LOG.error("AsyncContentReader: cannot store content", e);
+                markFailed();
+                _resp.setStatus(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
+            }
+            _asyncContext.complete();
+        }
+    }
+
+    @Override
+    public void onError(final Throwable t) {
+        fail(t);
+    }
+
+    @Override
+    public void onComplete(final AsyncEvent event) {
+        if (_done.compareAndSet(false, true)) {
+            try {
+                // e.g. the client disconnected, before the transaction ends
+                abort();
+            } finally {
+                _onComplete.run();
+            }
+        }
+    }
+
+    @Override
+    public void onTimeout(final AsyncEvent event) {
+        abort();
+        _asyncContext.complete();
+    }
+
+    @Override
+    public void onError(final AsyncEvent event) {
+        abort();
+        _asyncContext.complete();
+    }
+
+    @Override
+    public void onStartAsync(final AsyncEvent event) {
+        // nothing to do
+    }
+
+    private void fail(final Throwable t) {
+        LOG.trace("AsyncContentReader.fail(" + t + ")");
+        if (abort()) {
+            _resp.setStatus(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
+            _asyncContext.complete();
+        }
+    }
+
+    /**
+     * @return whether the writer has been aborted now
+     */
+    private boolean abort() {
+        if (_writerClosed.compareAndSet(false, true)) {
+            markFailed();
+            _writer.abort();
+            return true;
+        }
+        return false;
+    }
+
+    private void markFailed() {
+        _asyncContext.getRequest().setAttribute(
+                AbstractMethod.ASYNC_FAILED_ATTRIBUTE, Boolean.TRUE);
+    }
+}
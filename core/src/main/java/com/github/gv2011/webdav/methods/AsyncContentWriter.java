@@ -0,0 +1,118 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav.methods;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+/**
+ * Writes the content of a resource to a non-blocking response whenever the
+ * client can take more, so that no container thread waits for a slow client.
+ * Completes the request at the end of the content or on an error, and then
+ * releases what the request held.
+ */
+class AsyncContentWriter implements WriteListener, AsyncListener {
+
+    private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory
+            .getLogger(AsyncContentWriter.class);
+
+    private final AsyncContext _asyncContext;
+    private final InputStream _in;
+    private final ServletOutputStream _out;
+    private final Runnable _onComplete;
+    private final byte[] _copyBuffer;
+    private final AtomicBoolean _done = new AtomicBoolean();
+
+    /**
+     * @param asyncContext
+     *      the started asynchronous request
+     * @param in
+     *      the content, closed when the request completes
+     * @param out
+     *      the output of the response
+     * @param onComplete
+     *      run once when the request completes, in any way
+     * @param bufferSize
+     *      size of the copy buffer
+     */
+    AsyncContentWriter(final AsyncContext asyncContext, final InputStream in,
+            final ServletOutputStream out, final Runnable onComplete,
+            final int bufferSize) {
+        _asyncContext = asyncContext;
+        _in = in;
+        _out = out;
+        _onComplete = onComplete;
+        _copyBuffer = new byte[bufferSize];
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        while (_out.isReady()) {
+            final int read = _in.read(_copyBuffer, 0, _copyBuffer.length);
+            if (read == -1) {
+                _asyncContext.complete();
+                return;
+            }
+            _out.write(_copyBuffer, 0, read);
+        }
+    }
+
+    @Override
+    public void onError(final Throwable t) {
+        LOG.trace("AsyncContentWriter.onError(" + t + ")");
+        _asyncContext.complete();
+    }
+
+    @Override
+    public void onComplete(final AsyncEvent event) {
+        release();
+    }
+
+    @Override
+    public void onTimeout(final AsyncEvent event) {
+        _asyncContext.complete();
+    }
+
+    @Override
+    public void onError(final AsyncEvent event) {
+        _asyncContext.complete();
+    }
+
+    @Override
+    public void onStartAsync(final AsyncEvent event) {
+        // nothing to do
+    }
+
+    private void release() {
+        if (_done.compareAndSet(false, true)) {
+            try {
+                _in.close();
+            } catch (final IOException e) {
+                LOG.warn("Closing InputStream causes Exception!\n"
+                        + e.toString());
+            } finally {
+                _onComplete.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav.methods;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Satisfiable range of bytes of a resource, as requested by a Range header.
+ */
+public final class ByteRange {
+
+    private final long _start;
+    private final long _end;
+
+    /**
+     * @param start
+     *      first byte of the range
+     * @param end
+     *      last byte of the range, inclusive
+     */
+    public ByteRange(final long start, final long end) {
+        _start = start;
+        _end = end;
+    }
+
+    public long getStart() {
+        return _start;
+    }
+
+    public long getEnd() {
+        return _end;
+    }
+
+    public long getLength() {
+        return _end - _start + 1;
+    }
+
+    /**
+     * @param resourceLength
+     *      length of the whole resource
+     * @return the value of the Content-Range header for this range
+     */
+    public String toContentRange(final long resourceLength) {
+        return "bytes " + _start + "-" + _end + "/" + resourceLength;
+    }
+
+    /**
+     * Parses the value of a Range header.
+     *
+     * @param header
+     *      the Range header
+     * @param resourceLength
+     *      length of the whole resource
+     * @return the satisfiable ranges in ascending order, with overlapping and
+     *  adjacent ranges merged, which is empty if no range is satisfiable. It
+     *  is <code>null</code> if the header is not a valid byte range header,
+     *  which means it has to be ignored.
+     */
+    public static List<ByteRange> parse(final String header,
+            final long resourceLength) {
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+        final List<ByteRange> ranges = new ArrayList<>();
+        for (final String spec : header.substring(6).split(",")) {
+            final String trimmed = spec.trim();
+            final int dash = trimmed.indexOf('-');
+            if (dash == -1) {
+                return null;
+            }
+            final long start;
+            final long end;
+            try {
+                if (dash == 0) {
+                    // suffix range: the last bytes
+                    final long suffix = Long.parseLong(trimmed.substring(1));
+                    if (suffix <= 0) {
+                        continue;
+                    }
+                    start = Math.max(0, resourceLength - suffix);
+                    end = resourceLength - 1;
+                } else {
+                    start = Long.parseLong(trimmed.substring(0, dash));
+                    final long last = dash == trimmed.length() - 1 ? Long.MAX_VALUE
+                            : Long.parseLong(trimmed.substring(dash + 1));
+                    if (last < start) {
+                        return null;
+                    }
+                    end = Math.min(last, resourceLength - 1);
+                }
+            } catch (final NumberFormatException e) {
+                return null;
+            }
+            if (start < 0) {
+                return null;
+            }
+            if (start < resourceLength) {
+                ranges.add(new ByteRange(start, end));
+            }
+        }
+        return merge(ranges);
+    }
+
+    private static List<ByteRange> merge(final List<ByteRange> ranges) {
+        Collections.sort(ranges, (a, b) -> Long.compare(a._start, b._start));
+        final List<ByteRange> merged = new ArrayList<>();
+        ByteRange current = null;
+        for (final ByteRange range : ranges) {
+            if (current != null && range._start <= current._end + 1) {
+                current = new ByteRange(current._start, Math.max(current._end,
+                        range._end));
+            } else {
+                if (current != null) {
+                    merged.add(current);
+                }
+                current = range;
+            }
+        }
+        if (current != null) {
+            merged.add(current);
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav.methods;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands the content of a channel to the servlet container without copying it
+ * through a heap array, if the container's output supports that:
+ * <ul>
+ * <li>an output which has a <code>sendContent(ReadableByteChannel)</code>
+ * method, like Jetty's <code>HttpOutput</code>, gets the whole channel</li>
+ * <li>an output which is a {@link WritableByteChannel} gets the content by
+ * {@link FileChannel#transferTo}, which lets the operating system copy it
+ * (sendfile)</li>
+ * </ul>
+ */
+final class ChannelTransfer {
+
+    private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory
+            .getLogger(ChannelTransfer.class);
+
+    private static final ConcurrentHashMap<Class<?>, Optional<Method>> SEND_CONTENT = new ConcurrentHashMap<>();
+
+    private ChannelTransfer() {
+    }
+
+    /**
+     * @param out
+     *      the output of the response
+     * @return whether the whole content of a channel can be handed to
+     *  <code>out</code>
+     */
+    static boolean canTransfer(final OutputStream out) {
+        return out instanceof WritableByteChannel
+                || sendContent(out.getClass()).isPresent();
+    }
+
+    /**
+     * @param out
+     *      the output of the response
+     * @return whether parts of a channel can be handed to <code>out</code>
+     */
+    static boolean canTransferRange(final OutputStream out) {
+        return out instanceof WritableByteChannel;
+    }
+
+    /**
+     * Writes the whole content of <code>channel</code> to <code>out</code>,
+     * which must be supported according to {@link #canTransfer}.
+     */
+    static void transfer(final SeekableByteChannel channel,
+            final OutputStream out) throws IOException {
+        if (out instanceof WritableByteChannel) {
+            transfer(channel, 0, channel.size(), (WritableByteChannel) out);
+        } else {
+            try {
+                sendContent(out.getClass()).get().invoke(out, channel);
+            } catch (final InvocationTargetException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            } catch (final IllegalAccessException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes <code>count</code> bytes of <code>channel</code>, starting at
+     * <code>position</code>, to <code>out</code>, which must be supported
+     * according to {@link #canTransferRange}.
+     */
+    static void transfer(final SeekableByteChannel channel,
+            final long position, final long count, final OutputStream out)
+            throws IOException {
+        transfer(channel, position, count, (WritableByteChannel) out);
+    }
+
+    private static void transfer(final SeekableByteChannel channel,
+            final long position, final long count,
+            final WritableByteChannel out) throws IOException {
+        long transferred = 0;
+        if (channel instanceof FileChannel) {
+            final FileChannel fileChannel = (FileChannel) channel;
+            while (transferred < count) {
+                final long written = fileChannel.transferTo(position
+                        + transferred, count - transferred, out);
+                if (written <= 0) {
+                    if (position + transferred >= fileChannel.size()) {
+                        throw new EOFException();
+                    }
+                    // a blocking output always takes something, give up
+                    // instead of spinning on one which doesn't
+                    throw new IOException("output accepted no data");
+                }
+                transferred += written;
+            }
+        } else {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect((int) Math
+                    .min(AbstractMethod.BUF_SIZE, count));
+            channel.position(position);
+            while (transferred < count) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), count
+                        - transferred));
+                if (channel.read(buffer) == -1) {
+                    throw new EOFException();
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    final int written = out.write(buffer);
+                    if (written <= 0) {
+                        throw new IOException("output accepted no data");
+                    }
+                    transferred += written;
+                }
+            }
+        }
+    }
+
+    private static Optional<Method> sendContent(final Class<?> outputClass) {
+        return SEND_CONTENT.computeIfAbsent(outputClass, c -> {
+            try {
+                final Method method = c.getMethod("sendContent",
+                        ReadableByteChannel.class);
+                LOG.trace("ChannelTransfer: using " + method);
+                return Optional.of(method);
+            } catch (final NoSuchMethodException | SecurityException e) {
+                return Optional.empty();
+            }
+        });
+    }
+}
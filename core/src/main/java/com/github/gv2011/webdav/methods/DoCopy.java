@@ -59,6 +59,10 @@ public class DoCopy extends AbstractMethod {
         final String path = getRelativePath(req);
         if (!_readOnly) {
 
+            if (!checkSourcePreconditions(transaction, req, resp, path)) {
+                return;
+            }
+
             final String tempLockOwner = "doCopy" + System.currentTimeMillis()
                     + req.toString();
             if (_resourceLocks.lock(transaction, path, tempLockOwner, false, 0,
@@ -90,6 +94,30 @@ public class DoCopy extends AbstractMethod {
 
     }
 
+    /**
+     * Evaluates the conditional headers of a COPY or MOVE request against the
+     * source resource.
+     *
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param req
+     *      Servlet request
+     * @param resp
+     *      Servlet response
+     * @param sourcePath
+     *      path of the source resource
+     * @return true if the method is to be performed
+     * @throws IOException
+     *      when an error occurs while sending the response
+     */
+    public boolean checkSourcePreconditions(final ITransaction transaction,
+            final HttpServletRequest req, final HttpServletResponse resp,
+            final String sourcePath) throws IOException {
+        return checkPreconditions(transaction, req, resp, _store, sourcePath,
+                false);
+    }
+
     /**
      * Copy a resource.
      *
@@ -110,6 +138,38 @@ public class DoCopy extends AbstractMethod {
     public boolean copyResource(final ITransaction transaction,
             final HttpServletRequest req, final HttpServletResponse resp)
             throws WebdavException, IOException, LockFailedException {
+        return copyResource(transaction, req, resp, false);
+    }
+
+    /**
+     * Move a resource. If the store can move the resource natively, it is
+     * renamed in one store operation, otherwise it is copied and the source
+     * is deleted afterwards.
+     *
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param req
+     *      Servlet request
+     * @param resp
+     *      Servlet response
+     * @return true if the move is successful
+     * @throws WebdavException
+     *      if an error in the underlying store occurs
+     * @throws IOException
+     *      when an error occurs while sending the response
+     * @throws LockFailedException
+     */
+    public boolean moveResource(final ITransaction transaction,
+            final HttpServletRequest req, final HttpServletResponse resp)
+            throws WebdavException, IOException, LockFailedException {
+        return copyResource(transaction, req, resp, true);
+    }
+
+    private boolean copyResource(final ITransaction transaction,
+            final HttpServletRequest req, final HttpServletResponse resp,
+            final boolean move) throws WebdavException, IOException,
+            LockFailedException {
 
         // Parsing destination header
         final String destinationPath = parseDestinationHeader(req, resp);
@@ -196,7 +256,15 @@ public class DoCopy extends AbstractMethod {
                     }
 
                 }
-                copy(transaction, path, destinationPath, errorList, req, resp);
+                if (!move
+                        || !_store.moveObject(transaction, path, destinationPath)) {
+                    copy(transaction, path, destinationPath, errorList, req,
+                            resp);
+                    if (move && errorList.isEmpty()) {
+                        _doDelete.deleteResource(transaction, path, errorList,
+                                req, resp);
+                    }
+                }
 
                 if (!errorList.isEmpty()) {
                     sendReport(req, resp, errorList);
@@ -242,17 +310,7 @@ public class DoCopy extends AbstractMethod {
 
         final StoredObject sourceSo = _store.getStoredObject(transaction, sourcePath);
         if (sourceSo.isResource()) {
-            _store.createResource(transaction, destinationPath);
-            final long resourceLength = _store.setResourceContent(transaction,
-                    destinationPath, _store.getResourceContent(transaction,
-                            sourcePath), null, null);
-
-            if (resourceLength != -1) {
-                final StoredObject destinationSo = _store.getStoredObject(
-                        transaction, destinationPath);
-                destinationSo.setResourceLength(resourceLength);
-            }
-
+            copyContent(transaction, sourcePath, destinationPath);
         } else {
 
             if (sourceSo.isFolder()) {
@@ -309,20 +367,8 @@ public class DoCopy extends AbstractMethod {
                     childSo = _store.getStoredObject(transaction,
                             (sourcePath + children[i]));
                     if (childSo.isResource()) {
-                        _store.createResource(transaction, destinationPath
-                                + children[i]);
-                        final long resourceLength = _store.setResourceContent(
-                                transaction, destinationPath + children[i],
-                                _store.getResourceContent(transaction,
-                                        sourcePath + children[i]), null, null);
-
-                        if (resourceLength != -1) {
-                            final StoredObject destinationSo = _store
-                                    .getStoredObject(transaction,
-                                            destinationPath + children[i]);
-                            destinationSo.setResourceLength(resourceLength);
-                        }
-
+                        copyContent(transaction, sourcePath + children[i],
+                                destinationPath + children[i]);
                     } else {
                         copyFolder(transaction, sourcePath + children[i],
                                 destinationPath + children[i], errorList, req,
@@ -345,6 +391,40 @@ public class DoCopy extends AbstractMethod {
         }
     }
 
+    /**
+     * helper method of copy() and copyFolder(), copies a single content
+     * resource. The store is asked to copy the resource itself first, the
+     * content is only streamed through the servlet if it declines.
+     *
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param sourcePath
+     *      where to read
+     * @param destinationPath
+     *      where to write
+     * @throws WebdavException
+     *      if an error in the underlying store occurs
+     */
+    private void copyContent(final ITransaction transaction,
+            final String sourcePath, final String destinationPath)
+            throws WebdavException {
+
+        if (_store.copyObject(transaction, sourcePath, destinationPath)) {
+            return;
+        }
+        _store.createResource(transaction, destinationPath);
+        final long resourceLength = _store.setResourceContent(transaction,
+                destinationPath, _store.getResourceContent(transaction,
+                        sourcePath), null, null);
+
+        if (resourceLength != -1) {
+            final StoredObject destinationSo = _store.getStoredObject(
+                    transaction, destinationPath);
+            destinationSo.setResourceLength(resourceLength);
+        }
+    }
+
     /**
      * Parses and normalizes the destination header.
      *
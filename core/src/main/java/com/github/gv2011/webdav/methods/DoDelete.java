@@ -17,6 +17,8 @@ package com.github.gv2011.webdav.methods;
 
 import java.io.IOException;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -69,6 +71,11 @@ public class DoDelete extends AbstractMethod {
                 return; // resource is locked
             }
 
+            if (!checkPreconditions(transaction, req, resp, _store, path,
+                    false)) {
+                return;
+            }
+
             final String tempLockOwner = "doDelete" + System.currentTimeMillis()
                     + req.toString();
             if (_resourceLocks.lock(transaction, path, tempLockOwner, false, 0,
@@ -134,7 +141,6 @@ public class DoDelete extends AbstractMethod {
                 } else {
                     if (so.isFolder()) {
                         deleteFolder(transaction, path, errorList, req, resp);
-                        _store.removeObject(transaction, path);
                     } else {
                         resp.sendError(WebdavStatus.SC_NOT_FOUND);
                     }
@@ -152,7 +158,8 @@ public class DoDelete extends AbstractMethod {
     /**
      *
      * helper method of deleteResource() deletes the folder and all of its
-     * contents
+     * contents with a single store call. Members the store could not remove
+     * are added to the error list.
      *
      * @param transaction
      *      indicates that the method is within the scope of a WebDAV
@@ -172,36 +179,23 @@ public class DoDelete extends AbstractMethod {
             final Hashtable<String, Integer> errorList, final HttpServletRequest req,
             final HttpServletResponse resp) throws WebdavException {
 
-        String[] children = _store.getChildrenNames(transaction, path);
-        children = children == null ? new String[] {} : children;
-        StoredObject so = null;
-        for (int i = children.length - 1; i >= 0; i--) {
-            children[i] = "/" + children[i];
-            try {
-                so = _store.getStoredObject(transaction, path + children[i]);
-                if (so.isResource()) {
-                    _store.removeObject(transaction, path + children[i]);
-
-                } else {
-                    deleteFolder(transaction, path + children[i], errorList,
-                            req, resp);
+        final Map<String, WebdavException> failures = new LinkedHashMap<>();
+        _store.removeTree(transaction, path, failures);
 
-                    _store.removeObject(transaction, path + children[i]);
-
-                }
-            } catch (final AccessDeniedException e) {
-                errorList.put(path + children[i], new Integer(
+        for (final Map.Entry<String, WebdavException> failure : failures
+                .entrySet()) {
+            final WebdavException e = failure.getValue();
+            if (e instanceof AccessDeniedException) {
+                errorList.put(failure.getKey(), new Integer(
                         WebdavStatus.SC_FORBIDDEN));
-            } catch (final ObjectNotFoundException e) {
-                errorList.put(path + children[i], new Integer(
+            } else if (e instanceof ObjectNotFoundException) {
+                errorList.put(failure.getKey(), new Integer(
                         WebdavStatus.SC_NOT_FOUND));
-            } catch (final WebdavException e) {
-                errorList.put(path + children[i], new Integer(
+            } else {
+                errorList.put(failure.getKey(), new Integer(
                         WebdavStatus.SC_INTERNAL_SERVER_ERROR));
             }
         }
-        so = null;
-
     }
 
 }
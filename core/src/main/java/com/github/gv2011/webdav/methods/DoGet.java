@@ -15,17 +15,27 @@
  */
 package com.github.gv2011.webdav.methods;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.github.gv2011.webdav.ByteBufferInputStream;
 import com.github.gv2011.webdav.IMimeTyper;
 import com.github.gv2011.webdav.ITransaction;
 import com.github.gv2011.webdav.IWebdavStore;
@@ -38,6 +48,9 @@ public class DoGet extends DoHead {
     private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory
             .getLogger(DoGet.class);
 
+    private boolean _async;
+    private long _asyncTimeout = DEFAULT_ASYNC_TIMEOUT;
+
     public DoGet(final IWebdavStore store, final String dftIndexFile, final String insteadOf404,
             final ResourceLocks resourceLocks, final IMimeTyper mimeTyper,
             final int contentLengthHeader) {
@@ -46,6 +59,63 @@ public class DoGet extends DoHead {
 
     }
 
+    /**
+     * Sets whether resources are written asynchronously, through a
+     * WriteListener, if the request supports it. The servlet must be
+     * declared with async-supported in the deployment descriptor.
+     * 
+     * @param async
+     *      <code>true</code> to write asynchronously
+     */
+    public void setAsync(final boolean async) {
+        _async = async;
+    }
+
+    /**
+     * Sets the timeout of asynchronous requests, after which a stalled
+     * client no longer holds the transaction and the locks of its request.
+     * 
+     * @param asyncTimeout
+     *      milliseconds, for the whole transfer of the body
+     */
+    public void setAsyncTimeout(final long asyncTimeout) {
+        _asyncTimeout = asyncTimeout;
+    }
+
+    @Override
+    protected boolean asyncBody(final ITransaction transaction,
+            final HttpServletRequest req, final HttpServletResponse resp,
+            final String path, final Runnable onComplete) throws IOException {
+
+        if (!_async || !req.isAsyncSupported()) {
+            return false;
+        }
+        final StoredObject so = _store.getStoredObject(transaction, path);
+        if (so == null || so.isNullResource()) {
+            // doBody sends the error
+            return false;
+        }
+        final InputStream in = _store.getResourceContent(transaction, path);
+        final AsyncContext asyncContext;
+        final ServletOutputStream out;
+        try {
+            asyncContext = req.startAsync(req, resp);
+            out = resp.getOutputStream();
+        } catch (final IllegalStateException e) {
+            in.close();
+            throw e;
+        }
+        // the writer completes the request, the timeout ends stalled ones
+        asyncContext.setTimeout(_asyncTimeout);
+        final AsyncContentWriter writer = new AsyncContentWriter(asyncContext,
+                in, out, onComplete, (int) Math.min(BUF_SIZE, Math.max(1, so
+                        .getResourceLength())));
+        asyncContext.addListener(writer);
+        req.setAttribute(ASYNC_CONTEXT_ATTRIBUTE, asyncContext);
+        out.setWriteListener(writer);
+        return true;
+    }
+
     @Override
     protected void doBody(final ITransaction transaction, final HttpServletResponse resp,
             final String path) {
@@ -60,13 +130,52 @@ public class DoGet extends DoHead {
                 return;
             }
             final OutputStream out = resp.getOutputStream();
+            final ByteBuffer buffer = _store.getResourceBuffer(transaction,
+                    path);
+            if (buffer != null) {
+                // cached or mapped by the store, no need to read anything
+                try {
+                    new ByteBufferInputStream(buffer).writeTo(out);
+                } finally {
+                    try {
+                        out.flush();
+                        out.close();
+                    } catch (final Exception e) {
+                        LOG.warn("Flushing OutputStream causes Exception!\n"
+                                + e.toString());
+                    }
+                }
+                return;
+            }
+            if (ChannelTransfer.canTransfer(out)
+                    && _store.supportsResourceChannel()) {
+                // the container writes the content, e.g. by sendfile
+                try (SeekableByteChannel channel = _store.getResourceChannel(
+                        transaction, path)) {
+                    ChannelTransfer.transfer(channel, out);
+                } finally {
+                    try {
+                        out.flush();
+                        out.close();
+                    } catch (final Exception e) {
+                        LOG.warn("Flushing OutputStream causes Exception!\n"
+                                + e.toString());
+                    }
+                }
+                return;
+            }
             final InputStream in = _store.getResourceContent(transaction, path);
             try {
-                int read = -1;
-                final byte[] copyBuffer = new byte[BUF_SIZE];
+                if (in instanceof ByteBufferInputStream) {
+                    // e.g. a mapped file, no need for a copy buffer of full size
+                    ((ByteBufferInputStream) in).writeTo(out);
+                } else {
+                    int read = -1;
+                    final byte[] copyBuffer = new byte[BUF_SIZE];
 
-                while ((read = in.read(copyBuffer, 0, copyBuffer.length)) != -1) {
-                    out.write(copyBuffer, 0, read);
+                    while ((read = in.read(copyBuffer, 0, copyBuffer.length)) != -1) {
+                        out.write(copyBuffer, 0, read);
+                    }
                 }
             } finally {
                 // flushing causes a IOE if a file is opened on the webserver
@@ -90,6 +199,111 @@ public class DoGet extends DoHead {
         }
     }
 
+    @Override
+    protected void rangeBody(final ITransaction transaction,
+            final HttpServletResponse resp, final String path,
+            final List<ByteRange> ranges, final String mimeType,
+            final long resourceLength) {
+
+        try {
+            final OutputStream out = resp.getOutputStream();
+            final byte[] copyBuffer = new byte[(int) Math.min(BUF_SIZE,
+                    ranges.get(ranges.size() - 1).getEnd() + 1)];
+            try {
+                if (_store.supportsResourceChannel()) {
+                    // positional reads, no need to read what is not requested
+                    try (SeekableByteChannel channel = _store
+                            .getResourceChannel(transaction, path)) {
+                        for (final ByteRange range : ranges) {
+                            writePartHeader(out, ranges, range, mimeType,
+                                    resourceLength);
+                            if (ChannelTransfer.canTransferRange(out)) {
+                                ChannelTransfer.transfer(channel, range
+                                        .getStart(), range.getLength(), out);
+                            } else {
+                                channel.position(range.getStart());
+                                copy(Channels.newInputStream(channel), out,
+                                        range.getLength(), copyBuffer);
+                            }
+                        }
+                    }
+                } else {
+                    try (InputStream in = _store.getResourceContent(
+                            transaction, path)) {
+                        long position = 0;
+                        for (final ByteRange range : ranges) {
+                            writePartHeader(out, ranges, range, mimeType,
+                                    resourceLength);
+                            skip(in, range.getStart() - position);
+                            copy(in, out, range.getLength(), copyBuffer);
+                            position = range.getEnd() + 1;
+                        }
+                    }
+                }
+                if (ranges.size() > 1) {
+                    out.write(("\r\n--" + MULTIPART_BOUNDARY + "--\r\n")
+                            .getBytes(StandardCharsets.US_ASCII));
+                }
+            } finally {
+                try {
+                    out.flush();
+                    out.close();
+                } catch (final Exception e) {
+                    LOG.warn("Flushing OutputStream causes Exception!\n"
+                            + e.toString());
+                }
+            }
+        } catch (final Exception e) {
+            LOG.trace(e.toString());
+        }
+    }
+
+    private static void writePartHeader(final OutputStream out,
+            final List<ByteRange> ranges, final ByteRange range,
+            final String mimeType, final long resourceLength)
+            throws IOException {
+        if (ranges.size() > 1) {
+            final StringBuilder header = new StringBuilder();
+            header.append("\r\n--").append(MULTIPART_BOUNDARY).append("\r\n");
+            if (mimeType != null) {
+                header.append("Content-Type: ").append(mimeType).append("\r\n");
+            }
+            header.append("Content-Range: ").append(
+                    range.toContentRange(resourceLength)).append("\r\n\r\n");
+            out.write(header.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static void skip(final InputStream in, final long count)
+            throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            final long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new EOFException();
+                }
+                remaining--;
+            } else {
+                remaining -= skipped;
+            }
+        }
+    }
+
+    private static void copy(final InputStream in, final OutputStream out,
+            final long count, final byte[] copyBuffer) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            final int read = in.read(copyBuffer, 0, (int) Math.min(
+                    copyBuffer.length, remaining));
+            if (read == -1) {
+                throw new EOFException();
+            }
+            out.write(copyBuffer, 0, read);
+            remaining -= read;
+        }
+    }
+
     @Override
     protected void folderBody(final ITransaction transaction, final String path,
             final HttpServletResponse resp, final HttpServletRequest req)
@@ -116,11 +330,11 @@ public class DoGet extends DoHead {
                 resp.setContentType("text/html");
                 resp.setCharacterEncoding("UTF8");
                 final OutputStream out = resp.getOutputStream();
-                String[] children = _store.getChildrenNames(transaction, path);
-                // Make sure it's not null
-                children = children == null ? new String[] {} : children;
-                // Sort by name
-                Arrays.sort(children);
+                final Map<String, StoredObject> listing = _store.getChildren(
+                        transaction, path);
+                // Sort by name, making sure it's not null
+                final Map<String, StoredObject> children = listing == null ? new TreeMap<>()
+                        : new TreeMap<>(listing);
                 final StringBuilder childrenTemp = new StringBuilder();
                 childrenTemp.append("<html><head><title>Content of folder");
                 childrenTemp.append(path);
@@ -134,8 +348,9 @@ public class DoGet extends DoHead {
                 childrenTemp.append("<tr>");
                 childrenTemp.append("<td colspan=\"4\"><a href=\"../\">Parent</a></td></tr>");
                 boolean isEven= false;
-                for (final String child : children)
+                for (final Map.Entry<String, StoredObject> entry : children.entrySet())
                 {
+                    final String child = entry.getKey();
                     isEven= !isEven;
                     childrenTemp.append("<tr class=\"");
                     childrenTemp.append(isEven ? "even" : "odd");
@@ -143,7 +358,7 @@ public class DoGet extends DoHead {
                     childrenTemp.append("<td>");
                     childrenTemp.append("<a href=\"");
                     childrenTemp.append(child);
-                    final StoredObject obj= _store.getStoredObject(transaction, path+"/"+child);
+                    final StoredObject obj= entry.getValue();
                     if (obj == null)
                     {
                         LOG.error("Should not return null for "+path+"/"+child);
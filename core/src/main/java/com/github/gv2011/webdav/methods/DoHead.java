@@ -17,6 +17,7 @@ implied.
 package com.github.gv2011.webdav.methods;
 
 import java.io.IOException;
+import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -41,6 +42,11 @@ public class DoHead extends AbstractMethod {
     protected IMimeTyper _mimeTyper;
     protected int _contentLength;
 
+    /**
+     * Separates the parts of multipart/byteranges responses.
+     */
+    protected static final String MULTIPART_BOUNDARY = "WEBDAV_SERVLET_BYTERANGES";
+
     private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory
             .getLogger(DoHead.class);
 
@@ -97,21 +103,18 @@ public class DoHead extends AbstractMethod {
                 return;
             }
 
+            if (!checkPreconditions(req, resp, so, true)) {
+                return;
+            }
+
             final String tempLockOwner = "doGet" + System.currentTimeMillis()
                     + req.toString();
 
             if (_resourceLocks.lock(transaction, path, tempLockOwner, false, 0,
                     TEMP_TIMEOUT, TEMPORARY)) {
+                boolean async = false;
                 try {
 
-                    final String eTagMatch = req.getHeader("If-None-Match");
-                    if (eTagMatch != null) {
-                        if (eTagMatch.equals(getETag(so))) {
-                            resp.setStatus(WebdavStatus.SC_NOT_MODIFIED);
-                            return;
-                        }
-                    }
-
                     if (so.isResource()) {
                         // path points to a file but ends with / or \
                         if (path.endsWith("/") || (path.endsWith("\\"))) {
@@ -128,14 +131,27 @@ public class DoHead extends AbstractMethod {
 
                             final long resourceLength = so.getResourceLength();
 
+                            resp.setHeader("Accept-Ranges", "bytes");
+                            final List<ByteRange> ranges = getRanges(req, so,
+                                    eTag);
+                            if (ranges != null && ranges.isEmpty()) {
+                                resp.setHeader("Content-Range", "bytes */"
+                                        + resourceLength);
+                                resp.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                                return;
+                            }
+
                             if (_contentLength == 1) {
-                                if (resourceLength > 0) {
-                                    if (resourceLength <= Integer.MAX_VALUE) {
+                                final long length = ranges == null ? resourceLength
+                                        : ranges.size() == 1 ? ranges.get(0)
+                                                .getLength() : -1;
+                                if (length > 0) {
+                                    if (length <= Integer.MAX_VALUE) {
                                         resp
-                                                .setContentLength((int) resourceLength);
+                                                .setContentLength((int) length);
                                     } else {
                                         resp.setHeader("content-length", ""
-                                                + resourceLength);
+                                                + length);
                                         // is "content-length" the right header?
                                         // is long a valid format?
                                     }
@@ -154,7 +170,30 @@ public class DoHead extends AbstractMethod {
                                 }
                             }
 
-                            doBody(transaction, resp, path);
+                            if (ranges == null) {
+                                final String lockedPath = path;
+                                async = asyncBody(transaction, req, resp, path,
+                                        () -> _resourceLocks
+                                                .unlockTemporaryLockedObjects(
+                                                        transaction,
+                                                        lockedPath,
+                                                        tempLockOwner));
+                                if (!async) {
+                                    doBody(transaction, resp, path);
+                                }
+                            } else {
+                                resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                                if (ranges.size() == 1) {
+                                    resp.setHeader("Content-Range", ranges
+                                            .get(0).toContentRange(
+                                                    resourceLength));
+                                } else {
+                                    resp.setContentType("multipart/byteranges; boundary="
+                                            + MULTIPART_BOUNDARY);
+                                }
+                                rangeBody(transaction, resp, path, ranges,
+                                        mimeType, resourceLength);
+                            }
                         }
                     } else {
                         folderBody(transaction, path, resp, req);
@@ -167,8 +206,10 @@ public class DoHead extends AbstractMethod {
                 } catch (final WebdavException e) {
                     resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
                 } finally {
-                    _resourceLocks.unlockTemporaryLockedObjects(transaction,
-                            path, tempLockOwner);
+                    if (!async) {
+                        _resourceLocks.unlockTemporaryLockedObjects(
+                                transaction, path, tempLockOwner);
+                    }
                 }
             } else {
                 resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
@@ -192,4 +233,100 @@ public class DoHead extends AbstractMethod {
             final String path) throws IOException {
         // no body for HEAD
     }
+
+    /**
+     * Starts writing the body asynchronously, if supported. The request is
+     * then completed by the handler, and the store transaction is finished
+     * by the servlet afterwards.
+     * 
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param req
+     *      the request
+     * @param resp
+     *      the response
+     * @param path
+     *      path of the resource
+     * @param onComplete
+     *      releases the temporary lock, to be run when the request completes
+     * @return <code>true</code> if the body is written asynchronously,
+     *  <code>false</code> if {@link #doBody} has to write it
+     * @throws IOException
+     *      if writing fails
+     */
+    protected boolean asyncBody(final ITransaction transaction,
+            final HttpServletRequest req, final HttpServletResponse resp,
+            final String path, final Runnable onComplete) throws IOException {
+        // no body for HEAD
+        return false;
+    }
+
+    /**
+     * Writes the requested ranges of a resource. Status and headers are set
+     * already: 206, and Content-Range for a single range or the multipart
+     * Content-Type for several ranges.
+     * 
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param resp
+     *      the response
+     * @param path
+     *      path of the resource
+     * @param ranges
+     *      the satisfiable ranges in ascending order, not overlapping
+     * @param mimeType
+     *      the type of the resource, <code>null</code> if unknown
+     * @param resourceLength
+     *      length of the whole resource
+     * @throws IOException
+     *      if writing fails
+     */
+    protected void rangeBody(final ITransaction transaction,
+            final HttpServletResponse resp, final String path,
+            final List<ByteRange> ranges, final String mimeType,
+            final long resourceLength) throws IOException {
+        // no body for HEAD
+    }
+
+    /**
+     * Determines the ranges to send from the Range and If-Range headers.
+     * 
+     * @param req
+     *      the request
+     * @param so
+     *      the resource
+     * @param eTag
+     *      the ETag of the resource
+     * @return <code>null</code> if the whole resource is to be sent, an
+     *  empty list if no requested range is satisfiable
+     */
+    protected List<ByteRange> getRanges(final HttpServletRequest req,
+            final StoredObject so, final String eTag) {
+        final String range = req.getHeader("Range");
+        if (range == null) {
+            return null;
+        }
+        final String ifRange = req.getHeader("If-Range");
+        if (ifRange != null) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                // only strong validators can be used for ranges
+                if (eTag.startsWith("W/") || !ifRange.equals(eTag)) {
+                    return null;
+                }
+            } else {
+                final long date;
+                try {
+                    date = req.getDateHeader("If-Range");
+                } catch (final IllegalArgumentException e) {
+                    return null;
+                }
+                if (date / 1000 != so.getLastModified().getTime() / 1000) {
+                    return null;
+                }
+            }
+        }
+        return ByteRange.parse(range, so.getResourceLength());
+    }
 }
@@ -19,18 +19,9 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Hashtable;
 
-import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.xml.parsers.DocumentBuilder;
-
-import org.w3c.dom.DOMException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
+import javax.xml.stream.XMLStreamException;
 
 import com.github.gv2011.webdav.ITransaction;
 import com.github.gv2011.webdav.IWebdavStore;
@@ -160,9 +151,6 @@ public class DoLock extends AbstractMethod {
             // Thats the locking itself
             executeLock(transaction, req, resp);
 
-        } catch (final ServletException e) {
-            resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
-            LOG.trace(e.toString());
         } catch (final LockFailedException e) {
             sendLockFailError(transaction, req, resp);
         } finally {
@@ -219,9 +207,6 @@ public class DoLock extends AbstractMethod {
         } catch (final WebdavException e) {
             resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
             LOG.error("Webdav exception", e);
-        } catch (final ServletException e) {
-            resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
-            LOG.error("Servlet exception", e);
         } finally {
             parentSo = null;
             nullSo = null;
@@ -265,8 +250,7 @@ public class DoLock extends AbstractMethod {
      * Executes the LOCK
      */
     private void executeLock(final ITransaction transaction, final HttpServletRequest req,
-            final HttpServletResponse resp) throws LockFailedException, IOException,
-            ServletException {
+            final HttpServletResponse resp) throws LockFailedException, IOException {
 
         // Mac OS lock request workaround
         if (_macLockRequest) {
@@ -316,124 +300,44 @@ public class DoLock extends AbstractMethod {
      */
     private boolean getLockInformation(final ITransaction transaction,
             final HttpServletRequest req, final HttpServletResponse resp)
-            throws ServletException, IOException {
-
-        Node lockInfoNode = null;
-        DocumentBuilder documentBuilder = null;
+            throws IOException {
 
-        documentBuilder = getDocumentBuilder();
+        final XMLRequestBody body;
         try {
-            final Document document = documentBuilder.parse(new InputSource(req
-                    .getInputStream()));
-
-            // Get the root element of the document
-            final Element rootElement = document.getDocumentElement();
-
-            lockInfoNode = rootElement;
-
-            if (lockInfoNode != null) {
-                NodeList childList = lockInfoNode.getChildNodes();
-                Node lockScopeNode = null;
-                Node lockTypeNode = null;
-                Node lockOwnerNode = null;
-
-                Node currentNode = null;
-                String nodeName = null;
-
-                for (int i = 0; i < childList.getLength(); i++) {
-                    currentNode = childList.item(i);
-
-                    if (currentNode.getNodeType() == Node.ELEMENT_NODE
-                            || currentNode.getNodeType() == Node.TEXT_NODE) {
-
-                        nodeName = currentNode.getNodeName();
-
-                        if (nodeName.endsWith("locktype")) {
-                            lockTypeNode = currentNode;
-                        }
-                        if (nodeName.endsWith("lockscope")) {
-                            lockScopeNode = currentNode;
-                        }
-                        if (nodeName.endsWith("owner")) {
-                            lockOwnerNode = currentNode;
-                        }
-                    } else {
-                        return false;
-                    }
-                }
-
-                if (lockScopeNode != null) {
-                    String scope = null;
-                    childList = lockScopeNode.getChildNodes();
-                    for (int i = 0; i < childList.getLength(); i++) {
-                        currentNode = childList.item(i);
-
-                        if (currentNode.getNodeType() == Node.ELEMENT_NODE) {
-                            scope = currentNode.getNodeName();
-
-                            if (scope.endsWith("exclusive")) {
-                                _exclusive = true;
-                            } else if (scope.equals("shared")) {
-                                _exclusive = false;
-                            }
-                        }
-                    }
-                    if (scope == null) {
-                        return false;
-                    }
-
-                } else {
-                    return false;
-                }
-
-                if (lockTypeNode != null) {
-                    childList = lockTypeNode.getChildNodes();
-                    for (int i = 0; i < childList.getLength(); i++) {
-                        currentNode = childList.item(i);
+            body = XMLRequestBody.parse(req.getInputStream());
+        } catch (final XMLStreamException e) {
+            resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
+            LOG.error("XML stream exception", e);
+            return false;
+        }
 
-                        if (currentNode.getNodeType() == Node.ELEMENT_NODE) {
-                            _type = currentNode.getNodeName();
+        String scope = null;
+        for (final String name : body.getChildren("lockscope")) {
+            scope = name;
 
-                            if (_type.endsWith("write")) {
-                                _type = "write";
-                            } else if (_type.equals("read")) {
-                                _type = "read";
-                            }
-                        }
-                    }
-                    if (_type == null) {
-                        return false;
-                    }
-                } else {
-                    return false;
-                }
+            if (scope.endsWith("exclusive")) {
+                _exclusive = true;
+            } else if (scope.endsWith(":shared")) {
+                _exclusive = false;
+            }
+        }
+        if (scope == null) {
+            return false;
+        }
 
-                if (lockOwnerNode != null) {
-                    childList = lockOwnerNode.getChildNodes();
-                    for (int i = 0; i < childList.getLength(); i++) {
-                        currentNode = childList.item(i);
+        for (final String name : body.getChildren("locktype")) {
+            _type = name.substring(name.lastIndexOf(':') + 1);
 
-                        if (currentNode.getNodeType() == Node.ELEMENT_NODE
-							 || currentNode.getNodeType() == Node.TEXT_NODE) {
-							_lockOwner = currentNode.getFirstChild()
-									.getNodeValue();
-                        }
-                    }
-                }
-                if (_lockOwner == null) {
-                    return false;
-                }
-            } else {
-                return false;
+            if (_type.endsWith("write")) {
+                _type = "write";
             }
-
-        } catch (final DOMException e) {
-            resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
-            LOG.error("DOM exception", e);
+        }
+        if (_type == null) {
             return false;
-        } catch (final SAXException e) {
-            resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
-            LOG.error("SAX exception", e);
+        }
+
+        _lockOwner = body.getText("owner");
+        if (_lockOwner == null) {
             return false;
         }
 
@@ -492,7 +396,11 @@ public class DoLock extends AbstractMethod {
         resp.setStatus(WebdavStatus.SC_OK);
         resp.setContentType("text/xml; charset=UTF-8");
 
-        final XMLWriter generatedXML = new XMLWriter(resp.getWriter(), namespaces);
+        final String lockToken = lo.getID();
+        resp.addHeader("Lock-Token", "<opaquelocktoken:" + lockToken + ">");
+
+        final XMLWriter generatedXML = new XMLWriter(resp.getWriter(),
+                namespaces, XMLWriter.DEFAULT_BUFFER_SIZE);
         generatedXML.writeXMLHeader();
         generatedXML.writeElement("DAV::prop", XMLWriter.OPENING);
         generatedXML.writeElement("DAV::lockdiscovery", XMLWriter.OPENING);
@@ -531,7 +439,6 @@ public class DoLock extends AbstractMethod {
         generatedXML.writeText("Second-" + timeout / 1000);
         generatedXML.writeElement("DAV::timeout", XMLWriter.CLOSING);
 
-        final String lockToken = lo.getID();
         generatedXML.writeElement("DAV::locktoken", XMLWriter.OPENING);
         generatedXML.writeElement("DAV::href", XMLWriter.OPENING);
         generatedXML.writeText("opaquelocktoken:" + lockToken);
@@ -542,8 +449,6 @@ public class DoLock extends AbstractMethod {
         generatedXML.writeElement("DAV::lockdiscovery", XMLWriter.CLOSING);
         generatedXML.writeElement("DAV::prop", XMLWriter.CLOSING);
 
-        resp.addHeader("Lock-Token", "<opaquelocktoken:" + lockToken + ">");
-
         generatedXML.sendData();
 
     }
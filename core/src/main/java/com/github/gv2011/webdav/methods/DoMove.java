@@ -35,18 +35,27 @@ public class DoMove extends AbstractMethod {
             .getLogger(DoMove.class);
 
     private final ResourceLocks _resourceLocks;
-    private final DoDelete _doDelete;
     private final DoCopy _doCopy;
     private final boolean _readOnly;
 
-    public DoMove(final ResourceLocks resourceLocks, final DoDelete doDelete,
-            final DoCopy doCopy, final boolean readOnly) {
+    public DoMove(final ResourceLocks resourceLocks, final DoCopy doCopy,
+            final boolean readOnly) {
         _resourceLocks = resourceLocks;
-        _doDelete = doDelete;
         _doCopy = doCopy;
         _readOnly = readOnly;
     }
 
+    /**
+     * @deprecated the source is deleted by
+     *  {@link DoCopy#moveResource}, use
+     *  {@link #DoMove(ResourceLocks, DoCopy, boolean)}
+     */
+    @Deprecated
+    public DoMove(final ResourceLocks resourceLocks, final DoDelete doDelete,
+            final DoCopy doCopy, final boolean readOnly) {
+        this(resourceLocks, doCopy, readOnly);
+    }
+
     @Override
     public void execute(final ITransaction transaction, final HttpServletRequest req,
             final HttpServletResponse resp) throws IOException, LockFailedException {
@@ -55,7 +64,7 @@ public class DoMove extends AbstractMethod {
             LOG.trace("-- " + this.getClass().getName());
 
             final String sourcePath = getRelativePath(req);
-            Hashtable<String, Integer> errorList = new Hashtable<>();
+            final Hashtable<String, Integer> errorList = new Hashtable<>();
 
             if (!checkLocks(transaction, req, resp, _resourceLocks, sourcePath)) {
                 resp.setStatus(WebdavStatus.SC_LOCKED);
@@ -74,6 +83,11 @@ public class DoMove extends AbstractMethod {
                 return;
             }
 
+            if (!_doCopy.checkSourcePreconditions(transaction, req, resp,
+                    sourcePath)) {
+                return;
+            }
+
             final String tempLockOwner = "doMove" + System.currentTimeMillis()
                     + req.toString();
 
@@ -81,15 +95,7 @@ public class DoMove extends AbstractMethod {
                     false, 0, TEMP_TIMEOUT, TEMPORARY)) {
                 try {
 
-                    if (_doCopy.copyResource(transaction, req, resp)) {
-
-                        errorList = new Hashtable<>();
-                        _doDelete.deleteResource(transaction, sourcePath,
-                                errorList, req, resp);
-                        if (!errorList.isEmpty()) {
-                            sendReport(req, resp, errorList);
-                        }
-                    }
+                    _doCopy.moveResource(transaction, req, resp);
 
                 } catch (final AccessDeniedException e) {
                     resp.sendError(WebdavStatus.SC_FORBIDDEN);
@@ -16,20 +16,18 @@
 package com.github.gv2011.webdav.methods;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.Vector;
 
-import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.xml.parsers.DocumentBuilder;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.xml.sax.InputSource;
 
 import com.github.gv2011.webdav.IMimeTyper;
 import com.github.gv2011.webdav.ITransaction;
@@ -40,7 +38,6 @@ import com.github.gv2011.webdav.exceptions.AccessDeniedException;
 import com.github.gv2011.webdav.exceptions.LockFailedException;
 import com.github.gv2011.webdav.exceptions.WebdavException;
 import com.github.gv2011.webdav.fromcatalina.URLEncoder;
-import com.github.gv2011.webdav.fromcatalina.XMLHelper;
 import com.github.gv2011.webdav.fromcatalina.XMLWriter;
 import com.github.gv2011.webdav.locking.LockedObject;
 import com.github.gv2011.webdav.locking.ResourceLocks;
@@ -70,11 +67,20 @@ public class DoPropfind extends AbstractMethod {
      */
     private static final int FIND_PROPERTY_NAMES = 2;
 
+    /**
+     * Responses with more characters are not cached.
+     */
+    private static final int MAX_CACHED_LENGTH = 1024 * 1024;
+
     private final IWebdavStore _store;
     private final ResourceLocks _resourceLocks;
     private final IMimeTyper _mimeTyper;
 
-    private int _depth;
+    private boolean _finiteDepth;
+    private int _maxNodes;
+    private long _timeBudget;
+
+    private PropfindCache _cache;
 
     public DoPropfind(final IWebdavStore store, final ResourceLocks resLocks,
             final IMimeTyper mimeTyper) {
@@ -83,6 +89,39 @@ public class DoPropfind extends AbstractMethod {
         _mimeTyper = mimeTyper;
     }
 
+    /**
+     * Limits the resources a PROPFIND may walk. Without a node limit or time
+     * budget, Depth: infinity is served as three levels deep. With one of
+     * them, the whole tree is walked until the limit is hit, and the response
+     * then ends with a 507 response for the requested resource.
+     *
+     * @param finiteDepth
+     *      <code>true</code> to refuse Depth: infinity with 403 and the
+     *      DAV:propfind-finite-depth precondition
+     * @param maxNodes
+     *      maximum number of resources in a response, 0 for no limit
+     * @param timeBudget
+     *      milliseconds after which no more resources are added to a
+     *      response, 0 for no limit
+     */
+    public void setLimits(final boolean finiteDepth, final int maxNodes,
+            final long timeBudget) {
+        _finiteDepth = finiteDepth;
+        _maxNodes = maxNodes;
+        _timeBudget = timeBudget;
+    }
+
+    /**
+     * Sets the cache for rendered responses. Only responses with depth 0 or
+     * 1, which are complete and don't show a lock, are cached.
+     *
+     * @param cache
+     *      the cache, <code>null</code> for none
+     */
+    public void setCache(final PropfindCache cache) {
+        _cache = cache;
+    }
+
     @Override
     public void execute(final ITransaction transaction, final HttpServletRequest req,
             final HttpServletResponse resp) throws IOException, LockFailedException {
@@ -92,13 +131,23 @@ public class DoPropfind extends AbstractMethod {
         String path = getCleanPath(getRelativePath(req));
         final String tempLockOwner = "doPropfind" + System.currentTimeMillis()
                 + req.toString();
-        _depth = getDepth(req);
+        // per request, the handler is shared by concurrent requests
+        final int depth = getDepth(req);
+
+        if (depth == INFINITY && _finiteDepth) {
+            sendFiniteDepthError(resp);
+            return;
+        }
 
         if (_resourceLocks.lock(transaction, path, tempLockOwner, false,
-                _depth, TEMP_TIMEOUT, TEMPORARY)) {
+                depth, TEMP_TIMEOUT, TEMPORARY)) {
 
             StoredObject so = null;
             try {
+                // before the lookup, so that a change made meanwhile keeps the
+                // response out of the cache
+                final long generation = _cache == null ? 0 : _cache
+                        .getGeneration();
                 so = _store.getStoredObject(transaction, path);
                 if (so == null) {
                     resp.setContentType("text/xml; charset=UTF-8");
@@ -111,25 +160,17 @@ public class DoPropfind extends AbstractMethod {
                 path = getCleanPath(getRelativePath(req));
 
                 int propertyFindType = FIND_ALL_PROP;
-                Node propNode = null;
+                XMLRequestBody body = null;
 
                 if (req.getContentLength() != 0) {
-                    final DocumentBuilder documentBuilder = getDocumentBuilder();
                     try {
-                        final Document document = documentBuilder
-                                .parse(new InputSource(req.getInputStream()));
-                        // Get the root element of the document
-                        final Element rootElement = document.getDocumentElement();
-
-                        propNode = XMLHelper
-                                .findSubElement(rootElement, "prop");
-                        if (propNode != null) {
+                        body = XMLRequestBody.parse(req.getInputStream());
+
+                        if (body.has("prop")) {
                             propertyFindType = FIND_BY_PROPERTY;
-                        } else if (XMLHelper.findSubElement(rootElement,
-                                "propname") != null) {
+                        } else if (body.has("propname")) {
                             propertyFindType = FIND_PROPERTY_NAMES;
-                        } else if (XMLHelper.findSubElement(rootElement,
-                                "allprop") != null) {
+                        } else if (body.has("allprop")) {
                             propertyFindType = FIND_ALL_PROP;
                         }
                     } catch (final Exception e) {
@@ -146,39 +187,71 @@ public class DoPropfind extends AbstractMethod {
 
                 if (propertyFindType == FIND_BY_PROPERTY) {
                     propertyFindType = 0;
-                    properties = XMLHelper.getPropertiesFromXML(propNode);
+                    properties = new Vector<>(body.getChildren("prop"));
+                }
+
+                String cacheKey = null;
+                final long lastModified = so.getLastModified() == null ? -1
+                        : so.getLastModified().getTime();
+                if (_cache != null && depth != INFINITY) {
+                    cacheKey = getCacheKey(transaction, req, path, depth,
+                            propertyFindType, properties);
+                    final byte[] cached = _cache.get(cacheKey, lastModified);
+                    if (cached != null) {
+                        resp.setStatus(WebdavStatus.SC_MULTI_STATUS);
+                        resp.setContentType("text/xml; charset=UTF-8");
+                        resp.setContentLength(cached.length);
+                        resp.getOutputStream().write(cached);
+                        return;
+                    }
                 }
 
                 resp.setStatus(WebdavStatus.SC_MULTI_STATUS);
                 resp.setContentType("text/xml; charset=UTF-8");
 
+                final CapturingWriter capture = cacheKey == null ? null
+                        : new CapturingWriter(resp.getWriter());
+
                 // Create multistatus object
-                final XMLWriter generatedXML = new XMLWriter(resp.getWriter(),
-                        namespaces);
+                final XMLWriter generatedXML = new XMLWriter(
+                        capture == null ? resp.getWriter() : capture,
+                        namespaces, XMLWriter.DEFAULT_BUFFER_SIZE);
                 generatedXML.writeXMLHeader();
                 generatedXML
                         .writeElement("DAV::multistatus", XMLWriter.OPENING);
-                if (_depth == 0) {
-                    parseProperties(transaction, req, generatedXML, path,
+                final Walk walk = new Walk(depth, _maxNodes, _timeBudget);
+                boolean complete = true;
+                if (depth == 0) {
+                    parseProperties(transaction, req, generatedXML, path, so,
                             propertyFindType, properties, _mimeTyper
-                                    .getMimeType(transaction, path));
+                                    .getMimeType(transaction, path), walk);
                 } else {
-                    recursiveParseProperties(transaction, path, req,
-                            generatedXML, propertyFindType, properties, _depth,
-                            _mimeTyper.getMimeType(transaction, path));
+                    final int walkDepth = depth == INFINITY
+                            && walk.isLimited() ? Integer.MAX_VALUE : depth;
+                    if (!recursiveParseProperties(transaction, path, so, req,
+                            generatedXML, propertyFindType, properties, walkDepth,
+                            _mimeTyper.getMimeType(transaction, path), walk)) {
+                        writeTruncated(req, generatedXML, path, so, walk);
+                        complete = false;
+                    }
                 }
                 generatedXML
                         .writeElement("DAV::multistatus", XMLWriter.CLOSING);
 
                 generatedXML.sendData();
+
+                if (capture != null && complete && !walk.isLocked()) {
+                    final String captured = capture.getCaptured();
+                    if (captured != null) {
+                        _cache.put(cacheKey, generation, lastModified, captured
+                                .getBytes(StandardCharsets.UTF_8));
+                    }
+                }
             } catch (final AccessDeniedException e) {
                 resp.sendError(WebdavStatus.SC_FORBIDDEN);
             } catch (final WebdavException e) {
                 LOG.warn("Sending internal error!");
                 resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
-            } catch (final ServletException e) {
-                e.printStackTrace(); // To change body of catch statement use
-                // File | Settings | File Templates.
             } finally {
                 _resourceLocks.unlockTemporaryLockedObjects(transaction, path,
                         tempLockOwner);
@@ -195,6 +268,8 @@ public class DoPropfind extends AbstractMethod {
      *
      * @param currentPath
      *      the current path
+     * @param currentSo
+     *      the StoredObject at the current path
      * @param req
      *      HttpServletRequest
      * @param generatedXML
@@ -202,34 +277,124 @@ public class DoPropfind extends AbstractMethod {
      * @param properties
      * @param depth
      *      depth of the propfind
+     * @param walk
+     *      counts the resources of the response
+     * @return <code>false</code> if a limit was hit
      * @throws IOException
      *      if an error in the underlying store occurs
      */
-    private void recursiveParseProperties(final ITransaction transaction,
-            final String currentPath, final HttpServletRequest req, final XMLWriter generatedXML,
+    private boolean recursiveParseProperties(final ITransaction transaction,
+            final String currentPath, final StoredObject currentSo,
+            final HttpServletRequest req, final XMLWriter generatedXML,
             final int propertyFindType, final Vector<String> properties, final int depth,
-            final String mimeType) throws WebdavException {
-
-        parseProperties(transaction, req, generatedXML, currentPath,
-                propertyFindType, properties, mimeType);
+            final String mimeType, final Walk walk) throws WebdavException {
 
-        if (depth > 0) {
-            // no need to get name if depth is already zero
-            String[] names = _store.getChildrenNames(transaction, currentPath);
-            names = names == null ? new String[] {} : names;
+        if (!walk.next()) {
+            return false;
+        }
+        parseProperties(transaction, req, generatedXML, currentPath, currentSo,
+                propertyFindType, properties, mimeType, walk);
+
+        if (depth > 0 && currentSo.isFolder()) {
+            // no need to get children if depth is already zero
+            final Map<String, StoredObject> children = _store.getChildren(
+                    transaction, currentPath);
+            if (children == null) {
+                return true;
+            }
             String newPath = null;
 
-            for (final String name : names) {
+            for (final Map.Entry<String, StoredObject> child : children
+                    .entrySet()) {
+                if (child.getValue() == null) {
+                    // removed while listing
+                    continue;
+                }
                 newPath = currentPath;
                 if (!(newPath.endsWith("/"))) {
                     newPath += "/";
                 }
-                newPath += name;
-                recursiveParseProperties(transaction, newPath, req,
-                        generatedXML, propertyFindType, properties, depth - 1,
-                        mimeType);
+                newPath += child.getKey();
+                if (!recursiveParseProperties(transaction, newPath,
+                        child.getValue(), req, generatedXML, propertyFindType,
+                        properties, depth - 1, mimeType, walk)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ends a response which hit a limit with a 507 response for the requested
+     * resource, which tells the client that the result is incomplete.
+     */
+    private void writeTruncated(final HttpServletRequest req,
+            final XMLWriter generatedXML, final String path,
+            final StoredObject so, final Walk walk) {
+        LOG.debug("PROPFIND of " + path + " truncated after "
+                + walk.getNodes() + " resources");
+        generatedXML.writeElement("DAV::response", XMLWriter.OPENING);
+        generatedXML.writeElement("DAV::href", XMLWriter.OPENING);
+        generatedXML.writeText(getHref(req, path, so.isFolder()));
+        generatedXML.writeElement("DAV::href", XMLWriter.CLOSING);
+        generatedXML.writeElement("DAV::status", XMLWriter.OPENING);
+        generatedXML.writeText("HTTP/1.1 " + WebdavStatus.SC_INSUFFICIENT_STORAGE
+                + " "
+                + WebdavStatus
+                        .getStatusText(WebdavStatus.SC_INSUFFICIENT_STORAGE));
+        generatedXML.writeElement("DAV::status", XMLWriter.CLOSING);
+        generatedXML.writeElement("DAV::responsedescription",
+                XMLWriter.OPENING);
+        generatedXML.writeText("Truncated after " + walk.getNodes()
+                + " resources");
+        generatedXML.writeElement("DAV::responsedescription",
+                XMLWriter.CLOSING);
+        generatedXML.writeElement("DAV::response", XMLWriter.CLOSING);
+    }
+
+    /**
+     * Identifies a request to the cache: the user, the prefix of the hrefs,
+     * the depth, the requested properties and the resource.
+     */
+    private String getCacheKey(final ITransaction transaction,
+            final HttpServletRequest req, final String path, final int depth,
+            final int propertyFindType, final Vector<String> properties) {
+        final Principal principal = transaction.getPrincipal();
+        final StringBuilder key = new StringBuilder();
+        key.append(principal == null ? "" : principal.getName()).append('\n');
+        key.append(req.getContextPath()).append('\n');
+        key.append(req.getServletPath()).append('\n');
+        key.append(depth).append('\n');
+        key.append(propertyFindType).append('\n');
+        if (properties != null) {
+            for (final String property : properties) {
+                key.append(property).append(' ');
             }
         }
+        key.append('\n').append(path);
+        return key.toString();
+    }
+
+    /**
+     * Refuses Depth: infinity as described in RFC 4918, section 9.1.
+     */
+    private void sendFiniteDepthError(final HttpServletResponse resp)
+            throws IOException {
+        final HashMap<String, String> namespaces = new HashMap<>();
+        namespaces.put("DAV:", "D");
+
+        resp.setStatus(WebdavStatus.SC_FORBIDDEN);
+        resp.setContentType("text/xml; charset=UTF-8");
+
+        final XMLWriter generatedXML = new XMLWriter(resp.getWriter(),
+                namespaces);
+        generatedXML.writeXMLHeader();
+        generatedXML.writeElement("DAV::error", XMLWriter.OPENING);
+        generatedXML.writeElement("DAV::propfind-finite-depth",
+                XMLWriter.NO_CONTENT);
+        generatedXML.writeElement("DAV::error", XMLWriter.CLOSING);
+        generatedXML.sendData();
     }
 
     /**
@@ -241,18 +406,42 @@ public class DoPropfind extends AbstractMethod {
      *      XML response to the Propfind request
      * @param path
      *      Path of the current resource
+     * @param so
+     *      StoredObject of the current resource
      * @param type
      *      Propfind type
      * @param propertiesVector
      *      If the propfind type is find properties by name, then this Vector
      *      contains those properties
      */
+    private String getHref(final HttpServletRequest req, final String path,
+            final boolean isFolder) {
+        String href = req.getContextPath();
+        final String servletPath = req.getServletPath();
+        if (servletPath != null) {
+            if ((href.endsWith("/")) && (servletPath.startsWith("/")))
+                href += servletPath.substring(1);
+            else
+                href += servletPath;
+        }
+        if ((href.endsWith("/")) && (path.startsWith("/")))
+            href += path.substring(1);
+        else
+            href += path;
+        if ((isFolder) && (!href.endsWith("/")))
+            href += "/";
+        return rewriteUrl(href);
+    }
+
     private void parseProperties(final ITransaction transaction,
             final HttpServletRequest req, final XMLWriter generatedXML, final String path,
-            final int type, final Vector<String> propertiesVector, final String mimeType)
-            throws WebdavException {
+            final StoredObject so, final int type,
+            final Vector<String> propertiesVector, final String mimeType,
+            final Walk walk) throws WebdavException {
 
-        StoredObject so = _store.getStoredObject(transaction, path);
+        if (_resourceLocks.getLockedObjectByPath(transaction, path) != null) {
+            walk.locked();
+        }
 
         final boolean isFolder = so.isFolder();
         final String creationdate = creationDateFormat(so.getCreationDate());
@@ -267,23 +456,7 @@ public class DoPropfind extends AbstractMethod {
 
         // Generating href element
         generatedXML.writeElement("DAV::href", XMLWriter.OPENING);
-
-        String href = req.getContextPath();
-        final String servletPath = req.getServletPath();
-        if (servletPath != null) {
-            if ((href.endsWith("/")) && (servletPath.startsWith("/")))
-                href += servletPath.substring(1);
-            else
-                href += servletPath;
-        }
-        if ((href.endsWith("/")) && (path.startsWith("/")))
-            href += path.substring(1);
-        else
-            href += path;
-        if ((isFolder) && (!href.endsWith("/")))
-            href += "/";
-
-        generatedXML.writeText(rewriteUrl(href));
+        generatedXML.writeText(getHref(req, path, isFolder));
 
         generatedXML.writeElement("DAV::href", XMLWriter.CLOSING);
 
@@ -327,7 +500,8 @@ public class DoPropfind extends AbstractMethod {
 
             writeSupportedLockElements(transaction, generatedXML, path);
 
-            writeLockDiscoveryElements(transaction, generatedXML, path);
+            writeLockDiscoveryElements(transaction, generatedXML, path,
+                    walk.getDepth());
 
             generatedXML.writeProperty("DAV::source", "");
             generatedXML.writeElement("DAV::prop", XMLWriter.CLOSING);
@@ -449,7 +623,8 @@ public class DoPropfind extends AbstractMethod {
 
                 } else if (property.equals("DAV::lockdiscovery")) {
 
-                    writeLockDiscoveryElements(transaction, generatedXML, path);
+                    writeLockDiscoveryElements(transaction, generatedXML, path,
+                            walk.getDepth());
 
                 } else {
                     propertiesNotFound.addElement(property);
@@ -493,8 +668,6 @@ public class DoPropfind extends AbstractMethod {
         }
 
         generatedXML.writeElement("DAV::response", XMLWriter.CLOSING);
-
-        so = null;
     }
 
     private void writeSupportedLockElements(final ITransaction transaction,
@@ -557,7 +730,7 @@ public class DoPropfind extends AbstractMethod {
     }
 
     private void writeLockDiscoveryElements(final ITransaction transaction,
-            final XMLWriter generatedXML, final String path) {
+            final XMLWriter generatedXML, final String path, final int depth) {
 
         LockedObject lo = _resourceLocks.getLockedObjectByPath(transaction,
                 path);
@@ -580,10 +753,10 @@ public class DoPropfind extends AbstractMethod {
             generatedXML.writeElement("DAV::lockscope", XMLWriter.CLOSING);
 
             generatedXML.writeElement("DAV::depth", XMLWriter.OPENING);
-            if (_depth == INFINITY) {
+            if (depth == INFINITY) {
                 generatedXML.writeText("Infinity");
             } else {
-                generatedXML.writeText(String.valueOf(_depth));
+                generatedXML.writeText(String.valueOf(depth));
             }
             generatedXML.writeElement("DAV::depth", XMLWriter.CLOSING);
 
@@ -625,4 +798,103 @@ public class DoPropfind extends AbstractMethod {
         lo = null;
     }
 
+
+    /**
+     * Holds the depth of a request, counts the resources added to its
+     * response and tells when a limit is hit, and remembers whether one of
+     * them is locked.
+     */
+    private static final class Walk {
+
+        private final int _depth;
+        private final int _maxNodes;
+        private final long _deadline;
+        private int _nodes;
+        private boolean _locked;
+
+        private Walk(final int depth, final int maxNodes, final long timeBudget) {
+            _depth = depth;
+            _maxNodes = maxNodes;
+            _deadline = timeBudget > 0 ? System.nanoTime() + timeBudget
+                    * 1000000 : 0;
+        }
+
+        private int getDepth() {
+            return _depth;
+        }
+
+        private boolean isLimited() {
+            return _maxNodes > 0 || _deadline != 0;
+        }
+
+        /**
+         * @return <code>false</code> if no more resources may be added
+         */
+        private boolean next() {
+            if (_maxNodes > 0 && _nodes >= _maxNodes) {
+                return false;
+            }
+            if (_deadline != 0 && System.nanoTime() - _deadline > 0) {
+                return false;
+            }
+            _nodes++;
+            return true;
+        }
+
+        private int getNodes() {
+            return _nodes;
+        }
+
+        private void locked() {
+            _locked = true;
+        }
+
+        private boolean isLocked() {
+            return _locked;
+        }
+    }
+
+    /**
+     * Writes a response and keeps a copy of it for the cache, unless it gets
+     * too long.
+     */
+    private static final class CapturingWriter extends Writer {
+
+        private final Writer _out;
+        private StringWriter _captured = new StringWriter();
+
+        private CapturingWriter(final Writer out) {
+            _out = out;
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len)
+                throws IOException {
+            _out.write(cbuf, off, len);
+            if (_captured != null) {
+                if (_captured.getBuffer().length() + len > MAX_CACHED_LENGTH) {
+                    _captured = null;
+                } else {
+                    _captured.write(cbuf, off, len);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            _out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            _out.close();
+        }
+
+        /**
+         * @return what was written, <code>null</code> if it got too long
+         */
+        private String getCaptured() {
+            return _captured == null ? null : _captured.toString();
+        }
+    }
 }
@@ -7,15 +7,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Vector;
 
-import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.xml.parsers.DocumentBuilder;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.xml.sax.InputSource;
 
 import com.github.gv2011.webdav.ITransaction;
 import com.github.gv2011.webdav.IWebdavStore;
@@ -24,7 +17,6 @@ import com.github.gv2011.webdav.WebdavStatus;
 import com.github.gv2011.webdav.exceptions.AccessDeniedException;
 import com.github.gv2011.webdav.exceptions.LockFailedException;
 import com.github.gv2011.webdav.exceptions.WebdavException;
-import com.github.gv2011.webdav.fromcatalina.XMLHelper;
 import com.github.gv2011.webdav.fromcatalina.XMLWriter;
 import com.github.gv2011.webdav.locking.LockedObject;
 import com.github.gv2011.webdav.locking.ResourceLocks;
@@ -119,21 +111,11 @@ public class DoProppatch extends AbstractMethod {
 
                 path = getCleanPath(getRelativePath(req));
 
-                Node tosetNode = null;
-                Node toremoveNode = null;
+                XMLRequestBody body = null;
 
                 if (req.getContentLength() != 0) {
-                    final DocumentBuilder documentBuilder = getDocumentBuilder();
                     try {
-                        final Document document = documentBuilder
-                                .parse(new InputSource(req.getInputStream()));
-                        // Get the root element of the document
-                        final Element rootElement = document.getDocumentElement();
-
-                        tosetNode = XMLHelper.findSubElement(XMLHelper
-                                .findSubElement(rootElement, "set"), "prop");
-                        toremoveNode = XMLHelper.findSubElement(XMLHelper
-                                .findSubElement(rootElement, "remove"), "prop");
+                        body = XMLRequestBody.parse(req.getInputStream());
                     } catch (final Exception e) {
                         resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
                         return;
@@ -147,13 +129,13 @@ public class DoProppatch extends AbstractMethod {
                 final HashMap<String, String> namespaces = new HashMap<>();
                 namespaces.put("DAV:", "D");
 
-                if (tosetNode != null) {
-                    toset = XMLHelper.getPropertiesFromXML(tosetNode);
+                if (body.has("set/prop")) {
+                    toset = body.getChildren("set/prop");
                     tochange.addAll(toset);
                 }
 
-                if (toremoveNode != null) {
-                    toremove = XMLHelper.getPropertiesFromXML(toremoveNode);
+                if (body.has("remove/prop")) {
+                    toremove = body.getChildren("remove/prop");
                     tochange.addAll(toremove);
                 }
 
@@ -162,7 +144,7 @@ public class DoProppatch extends AbstractMethod {
 
                 // Create multistatus object
                 final XMLWriter generatedXML = new XMLWriter(resp.getWriter(),
-                        namespaces);
+                        namespaces, XMLWriter.DEFAULT_BUFFER_SIZE);
                 generatedXML.writeXMLHeader();
                 generatedXML
                         .writeElement("DAV::multistatus", XMLWriter.OPENING);
@@ -215,9 +197,6 @@ public class DoProppatch extends AbstractMethod {
                 resp.sendError(WebdavStatus.SC_FORBIDDEN);
             } catch (final WebdavException e) {
                 resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
-            } catch (final ServletException e) {
-                e.printStackTrace(); // To change body of catch statement use
-                // File | Settings | File Templates.
             } finally {
                 _resourceLocks.unlockTemporaryLockedObjects(transaction, path,
                         tempLockOwner);
@@ -18,11 +18,14 @@ package com.github.gv2011.webdav.methods;
 import java.io.IOException;
 import java.util.Hashtable;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import com.github.gv2011.webdav.ITransaction;
 import com.github.gv2011.webdav.IWebdavStore;
+import com.github.gv2011.webdav.ResourceWriter;
 import com.github.gv2011.webdav.StoredObject;
 import com.github.gv2011.webdav.WebdavStatus;
 import com.github.gv2011.webdav.exceptions.AccessDeniedException;
@@ -42,6 +45,8 @@ public class DoPut extends AbstractMethod {
     private final boolean _lazyFolderCreationOnPut;
 
     private String _userAgent;
+    private boolean _async;
+    private long _asyncTimeout = DEFAULT_ASYNC_TIMEOUT;
 
     public DoPut(final IWebdavStore store, final IResourceLocks resLocks, final boolean readOnly,
             final boolean lazyFolderCreationOnPut) {
@@ -74,11 +79,17 @@ public class DoPut extends AbstractMethod {
                 return; // resource is locked
             }
 
+            if (!checkPreconditions(transaction, req, resp, _store, path,
+                    false)) {
+                return;
+            }
+
             final String tempLockOwner = "doPut" + System.currentTimeMillis()
                     + req.toString();
             if (_resourceLocks.lock(transaction, path, tempLockOwner, false, 0,
                     TEMP_TIMEOUT, TEMPORARY)) {
                 StoredObject parentSo, so = null;
+                boolean async = false;
                 try {
                     parentSo = _store.getStoredObject(transaction, parentPath);
                     if (parentPath != null && parentSo != null
@@ -147,10 +158,22 @@ public class DoPut extends AbstractMethod {
                     // User-Agent workarounds
                     doUserAgentWorkaround(resp);
 
+                    if (_async && req.isAsyncSupported()
+                            && _store.supportsResourceWriter()) {
+                        startAsyncRead(transaction, req, resp, path,
+                                () -> _resourceLocks
+                                        .unlockTemporaryLockedObjects(
+                                                transaction, path,
+                                                tempLockOwner));
+                        async = true;
+                        return;
+                    }
+
                     // setting resourceContent
                     final long resourceLength = _store
                             .setResourceContent(transaction, path, req
-                                    .getInputStream(), null, null);
+                                    .getInputStream(), null, null,
+                                    req.getContentLengthLong());
 
                     so = _store.getStoredObject(transaction, path);
                     if (resourceLength != -1)
@@ -162,8 +185,10 @@ public class DoPut extends AbstractMethod {
                 } catch (final WebdavException e) {
                     resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
                 } finally {
-                    _resourceLocks.unlockTemporaryLockedObjects(transaction,
-                            path, tempLockOwner);
+                    if (!async) {
+                        _resourceLocks.unlockTemporaryLockedObjects(
+                                transaction, path, tempLockOwner);
+                    }
                 }
             } else {
                 resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
@@ -174,6 +199,59 @@ public class DoPut extends AbstractMethod {
 
     }
 
+    /**
+     * Sets whether request bodies are read asynchronously, through a
+     * ReadListener, if the request and the store support it. The servlet
+     * must be declared with async-supported in the deployment descriptor.
+     * 
+     * @param async
+     *      <code>true</code> to read asynchronously
+     */
+    public void setAsync(final boolean async) {
+        _async = async;
+    }
+
+    /**
+     * Sets the timeout of asynchronous requests, after which a stalled
+     * client no longer holds the transaction and the locks of its request.
+     * 
+     * @param asyncTimeout
+     *      milliseconds, for the whole transfer of the body
+     */
+    public void setAsyncTimeout(final long asyncTimeout) {
+        _asyncTimeout = asyncTimeout;
+    }
+
+    /**
+     * Starts reading the body into a writer of the store as it arrives. The
+     * request is completed when the body has been stored.
+     * 
+     * @param onComplete
+     *      releases the temporary lock, to be run when the request completes
+     */
+    private void startAsyncRead(final ITransaction transaction,
+            final HttpServletRequest req, final HttpServletResponse resp,
+            final String path, final Runnable onComplete) throws IOException {
+        final ResourceWriter writer = _store.openResourceWriter(transaction,
+                path, null, null, req.getContentLengthLong());
+        final AsyncContext asyncContext;
+        final ServletInputStream in;
+        try {
+            asyncContext = req.startAsync(req, resp);
+            in = req.getInputStream();
+        } catch (final IllegalStateException | IOException e) {
+            writer.abort();
+            throw e;
+        }
+        // the reader completes the request, the timeout rolls back stalled ones
+        asyncContext.setTimeout(_asyncTimeout);
+        final AsyncContentReader reader = new AsyncContentReader(asyncContext,
+                in, writer, resp, onComplete, BUF_SIZE);
+        asyncContext.addListener(reader);
+        req.setAttribute(ASYNC_CONTEXT_ATTRIBUTE, asyncContext);
+        in.setReadListener(reader);
+    }
+
     /**
      * @param resp
      */
@@ -0,0 +1,165 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav.methods;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.github.gv2011.webdav.StoredObject;
+import com.github.gv2011.webdav.WebdavStatus;
+
+/**
+ * The conditional headers of a request, evaluated in the order of RFC 7232,
+ * section 6: If-Match, If-Unmodified-Since, If-None-Match and
+ * If-Modified-Since.
+ */
+public final class Preconditions {
+
+    /**
+     * Returned by {@link #evaluate} if the method is to be performed.
+     */
+    public static final int MET = 0;
+
+    private final String _ifMatch;
+    private final String _ifNoneMatch;
+    private final long _ifUnmodifiedSince;
+    private final long _ifModifiedSince;
+
+    private Preconditions(final String ifMatch, final String ifNoneMatch,
+            final long ifUnmodifiedSince, final long ifModifiedSince) {
+        _ifMatch = ifMatch;
+        _ifNoneMatch = ifNoneMatch;
+        _ifUnmodifiedSince = ifUnmodifiedSince;
+        _ifModifiedSince = ifModifiedSince;
+    }
+
+    /**
+     * Reads the conditional headers of a request. Dates which can't be parsed
+     * are ignored.
+     *
+     * @param req
+     *      the request
+     * @return the preconditions, <code>null</code> if the request has none
+     */
+    public static Preconditions of(final HttpServletRequest req) {
+        final String ifMatch = req.getHeader("If-Match");
+        final String ifNoneMatch = req.getHeader("If-None-Match");
+        final long ifUnmodifiedSince = parseDate(req
+                .getHeader("If-Unmodified-Since"));
+        final long ifModifiedSince = parseDate(req
+                .getHeader("If-Modified-Since"));
+        if (ifMatch == null && ifNoneMatch == null && ifUnmodifiedSince == -1
+                && ifModifiedSince == -1) {
+            return null;
+        }
+        return new Preconditions(ifMatch, ifNoneMatch, ifUnmodifiedSince,
+                ifModifiedSince);
+    }
+
+    /**
+     * Evaluates the preconditions against the current state of a resource.
+     *
+     * @param so
+     *      the resource, <code>null</code> if it doesn't exist
+     * @param eTag
+     *      the ETag of the resource, with quotes
+     * @param safe
+     *      <code>true</code> for GET and HEAD, which are answered with 304 Not
+     *      Modified instead of 412 Precondition Failed if If-None-Match or
+     *      If-Modified-Since fail
+     * @return {@link #MET} if the method is to be performed, otherwise the
+     *  status to respond with
+     */
+    public int evaluate(final StoredObject so, final String eTag,
+            final boolean safe) {
+        final boolean exists = so != null && !so.isNullResource();
+        final long lastModified = exists && so.getLastModified() != null ? so
+                .getLastModified().getTime() / 1000 : -1;
+
+        if (_ifMatch != null) {
+            if (!exists || !matches(_ifMatch, eTag, false)) {
+                return WebdavStatus.SC_PRECONDITION_FAILED;
+            }
+        } else if (_ifUnmodifiedSince != -1 && lastModified != -1) {
+            if (lastModified > _ifUnmodifiedSince / 1000) {
+                return WebdavStatus.SC_PRECONDITION_FAILED;
+            }
+        }
+
+        if (_ifNoneMatch != null) {
+            if (exists && matches(_ifNoneMatch, eTag, true)) {
+                return safe ? WebdavStatus.SC_NOT_MODIFIED
+                        : WebdavStatus.SC_PRECONDITION_FAILED;
+            }
+        } else if (safe && _ifModifiedSince != -1 && lastModified != -1) {
+            if (lastModified <= _ifModifiedSince / 1000) {
+                return WebdavStatus.SC_NOT_MODIFIED;
+            }
+        }
+        return MET;
+    }
+
+    /**
+     * @param header
+     *      "*" or a list of entity tags
+     * @param eTag
+     *      the entity tag of the resource
+     * @param weak
+     *      <code>true</code> for the weak comparison, which ignores the W/
+     *      prefix, otherwise weak tags never match
+     * @return true if the header matches the entity tag
+     */
+    static boolean matches(final String header, final String eTag,
+            final boolean weak) {
+        if (header.trim().equals("*")) {
+            return true;
+        }
+        if (!weak && eTag.startsWith("W/")) {
+            return false;
+        }
+        final String opaque = opaque(eTag);
+        for (final String candidate : header.split(",")) {
+            final String tag = candidate.trim();
+            if (!weak && tag.startsWith("W/")) {
+                continue;
+            }
+            if (opaque(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(final String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
+    private static long parseDate(final String header) {
+        if (header == null) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(header.trim(),
+                    DateTimeFormatter.RFC_1123_DATE_TIME).toInstant()
+                    .toEpochMilli();
+        } catch (final DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
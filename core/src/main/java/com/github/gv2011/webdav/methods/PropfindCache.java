@@ -0,0 +1,147 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav.methods;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Rendered multistatus bodies of PROPFIND requests, so that the depth 1
+ * PROPFINDs clients repeat every few seconds on the same folders are
+ * answered without looking at every child again.
+ * <p>
+ * Entries are kept least recently used and bounded in number. An entry is
+ * only served while
+ * <ul>
+ * <li>no method which may change resources or locks was executed since it
+ * was rendered, see {@link #invalidate()},</li>
+ * <li>the requested resource has the same date of last modification, which
+ * for a directory of a file system changes when children are added or
+ * removed by other means, and</li>
+ * <li>its time to live hasn't passed, which bounds how long changes to the
+ * content of children made by other means go unnoticed.</li>
+ * </ul>
+ */
+public final class PropfindCache {
+
+    private final int _maxEntries;
+    private final long _timeToLive;
+
+    private final LinkedHashMap<String, Entry> _entries = new LinkedHashMap<>(
+            16, 0.75f, true);
+
+    /**
+     * Counts invalidations, so that responses which were rendered before an
+     * invalidation are not served after it.
+     */
+    private long _generation;
+
+    /**
+     * @param maxEntries
+     *      maximum number of responses in the cache
+     * @param timeToLive
+     *      milliseconds after which a response is rendered again
+     */
+    public PropfindCache(final int maxEntries, final long timeToLive) {
+        _maxEntries = maxEntries;
+        _timeToLive = timeToLive;
+    }
+
+    /**
+     * @return the current generation, to be passed to
+     *  {@link #put(String, long, long, byte[])} for a response rendered from
+     *  now on
+     */
+    public synchronized long getGeneration() {
+        return _generation;
+    }
+
+    /**
+     * @param key
+     *      identifies the request
+     * @param lastModified
+     *      date of last modification of the requested resource, in
+     *      milliseconds, -1 if unknown
+     * @return the response body, <code>null</code> if there is no valid one
+     */
+    public synchronized byte[] get(final String key, final long lastModified) {
+        final Entry entry = _entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry._generation != _generation
+                || entry._lastModified != lastModified
+                || entry._expires <= System.currentTimeMillis()) {
+            _entries.remove(key);
+            return null;
+        }
+        return entry._body;
+    }
+
+    /**
+     * Remembers a response, unless the cache was invalidated since it started
+     * to be rendered.
+     *
+     * @param key
+     *      identifies the request
+     * @param generation
+     *      the generation before the response was rendered
+     * @param lastModified
+     *      date of last modification of the requested resource, in
+     *      milliseconds, -1 if unknown
+     * @param body
+     *      the response body
+     */
+    public synchronized void put(final String key, final long generation,
+            final long lastModified, final byte[] body) {
+        if (generation != _generation) {
+            return;
+        }
+        _entries.put(key, new Entry(generation, lastModified, System
+                .currentTimeMillis()
+                + _timeToLive, body));
+        if (_entries.size() > _maxEntries) {
+            final Iterator<Entry> eldest = _entries.values().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Drops all responses. To be called for every method which may change
+     * resources or locks.
+     */
+    public synchronized void invalidate() {
+        _generation++;
+        _entries.clear();
+    }
+
+    private static final class Entry {
+
+        private final long _generation;
+        private final long _lastModified;
+        private final long _expires;
+        private final byte[] _body;
+
+        private Entry(final long generation, final long lastModified,
+                final long expires, final byte[] body) {
+            _generation = generation;
+            _lastModified = lastModified;
+            _expires = expires;
+            _body = body;
+        }
+    }
+}
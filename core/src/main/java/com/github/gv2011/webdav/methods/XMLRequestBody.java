@@ -0,0 +1,161 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.github.gv2011.webdav.methods;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The parts of a PROPFIND, PROPPATCH or LOCK request body the methods need,
+ * read with a pull parser instead of building a DOM. Elements are addressed
+ * by the local names of their ancestors below the root element, e.g.
+ * "set/prop" for the first two levels of a propertyupdate.
+ */
+public final class XMLRequestBody {
+
+    /**
+     * Number of levels below the root element which are kept.
+     */
+    private static final int DEPTH = 2;
+
+    /**
+     * Factories are thread safe once configured, looking one up is not
+     * cheap.
+     */
+    private static final XMLInputFactory FACTORY = newFactory();
+
+    private final Map<String, List<String>> _children = new HashMap<>();
+    private final Map<String, StringBuilder> _text = new HashMap<>();
+
+    private XMLRequestBody() {
+    }
+
+    /**
+     * Reads a request body.
+     *
+     * @param in
+     *      the body
+     * @return the body
+     * @throws XMLStreamException
+     *      if the body isn't well formed XML
+     */
+    public static XMLRequestBody parse(final InputStream in)
+            throws XMLStreamException {
+        final XMLRequestBody body = new XMLRequestBody();
+        final XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+        try {
+            final Deque<String> paths = new ArrayDeque<>();
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    final String parent = paths.peek();
+                    String path = "";
+                    if (parent != null) {
+                        path = parent.isEmpty() ? reader.getLocalName()
+                                : parent + "/" + reader.getLocalName();
+                        if (paths.size() <= DEPTH + 1) {
+                            body._children.get(parent).add(
+                                    reader.getNamespaceURI() + ":"
+                                            + reader.getLocalName());
+                        }
+                    }
+                    if (paths.size() <= DEPTH) {
+                        body._children.putIfAbsent(path,
+                                new ArrayList<String>());
+                        body._text.putIfAbsent(path, new StringBuilder());
+                    }
+                    paths.push(path);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    paths.pop();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    for (final String open : paths) {
+                        final StringBuilder text = body._text.get(open);
+                        if (text != null && !open.isEmpty()) {
+                            text.append(reader.getText());
+                        }
+                    }
+                    break;
+                default:
+                    break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return body;
+    }
+
+    /**
+     * @param path
+     *      path of the element below the root element
+     * @return true if the body contains the element
+     */
+    public boolean has(final String path) {
+        return _children.containsKey(path);
+    }
+
+    /**
+     * @param path
+     *      path of the element below the root element, "" for the root
+     *      element
+     * @return the names of the child elements, as namespace + ":" + local
+     *  name, empty if the element doesn't exist
+     */
+    public List<String> getChildren(final String path) {
+        final List<String> children = _children.get(path);
+        return children == null ? Collections.<String> emptyList() : children;
+    }
+
+    /**
+     * @param path
+     *      path of the element below the root element
+     * @return the text of the element and its descendants without leading
+     *  and trailing white space, <code>null</code> if it is empty or the
+     *  element doesn't exist
+     */
+    public String getText(final String path) {
+        final StringBuilder text = _text.get(path);
+        if (text == null) {
+            return null;
+        }
+        final String trimmed = text.toString().trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static XMLInputFactory newFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(
+                XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                Boolean.FALSE);
+        return factory;
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.gv2011.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.gv2011.webdav.exceptions.WebdavException;
+
+import junit.framework.Assert;
+
+@SuppressWarnings("deprecation")
+public class CachingStoreTest extends Assert {
+
+    private MemoryStore _backend;
+    private CachingStore _store;
+
+    @Before
+    public void setUp() throws Exception {
+        _backend = new MemoryStore();
+        _store = new CachingStore(_backend, 4, 60000);
+        _backend.createFolder(null, "/folder");
+        _backend.createResource(null, "/folder/file");
+    }
+
+    @Test
+    public void testStoredObjectIsCachedAsCopy() throws Exception {
+        final StoredObject so = _store.getStoredObject(null, "/folder/file");
+        so.setNullResource(true);
+
+        // changed behind the cache's back, so the cached value is returned
+        _backend.setResourceContent(null, "/folder/file",
+                new ByteArrayInputStream(new byte[3]), null, null);
+        final StoredObject cached = _store.getStoredObject(null, "/folder/file/");
+        assertFalse(cached.isNullResource());
+        assertEquals(0, cached.getResourceLength());
+    }
+
+    @Test
+    public void testWritesInvalidate() throws Exception {
+        assertEquals(0, _store.getStoredObject(null, "/folder/file")
+                .getResourceLength());
+        assertEquals(1, _store.getChildrenNames(null, "/folder").length);
+
+        _store.setResourceContent(null, "/folder/file",
+                new ByteArrayInputStream(new byte[3]), null, null);
+        _store.createResource(null, "/folder/other");
+
+        assertEquals(3, _store.getStoredObject(null, "/folder/file")
+                .getResourceLength());
+        assertEquals(2, _store.getChildrenNames(null, "/folder").length);
+
+        _store.removeTree(null, "/folder",
+                new HashMap<String, WebdavException>());
+        assertNull(_store.getStoredObject(null, "/folder/file"));
+        assertEquals(0, _store.getChildrenNames(null, "/").length);
+    }
+
+    @Test
+    public void testChildrenAreListedFromCache() throws Exception {
+        assertEquals(1, _store.getChildren(null, "/folder").size());
+
+        // created behind the cache's back, so the cached listing is returned
+        _backend.createResource(null, "/folder/other");
+        assertEquals(Arrays.asList("file"), new ArrayList<>(_store
+                .getChildren(null, "/folder").keySet()));
+
+        _store.createResource(null, "/folder/third");
+        assertEquals(3, _store.getChildren(null, "/folder").size());
+    }
+
+    @Test
+    public void testRepeatedSlashesAreCollapsed() throws Exception {
+        assertEquals("/dst/x", DelegatingStore.normalize("/dst//x"));
+        assertEquals("/dst/x", DelegatingStore.normalize("dst/x//"));
+        assertEquals("/", DelegatingStore.normalize("//"));
+        assertEquals("/", DelegatingStore.normalize(""));
+
+        assertEquals(0, _store.getStoredObject(null, "/folder/file")
+                .getResourceLength());
+        _store.setResourceContent(null, "/folder//file",
+                new ByteArrayInputStream(new byte[3]), null, null);
+        assertEquals(3, _store.getStoredObject(null, "/folder/file")
+                .getResourceLength());
+    }
+
+    @Test
+    public void testMoveInvalidatesSubtree() throws Exception {
+        final Path root = Files.createTempDirectory("caching");
+        Files.createDirectory(root.resolve("folder"));
+        Files.createFile(root.resolve("folder").resolve("file"));
+        _store = new CachingStore(new LocalFileSystemStore(root.toFile()), 4,
+                60000);
+        _store.getStoredObject(null, "/folder/file");
+        _store.getChildren(null, "/folder");
+
+        assertTrue(_store.moveObject(null, "/folder", "/moved"));
+
+        assertNull(_store.getStoredObject(null, "/folder/file"));
+        assertNotNull(_store.getStoredObject(null, "/moved/file"));
+        assertTrue(Arrays.equals(new String[] { "moved" }, _store
+                .getChildrenNames(null, "/")));
+
+        Files.delete(root.resolve("moved").resolve("file"));
+        Files.delete(root.resolve("moved"));
+        Files.delete(root);
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception {
+        _store = new CachingStore(_backend, 4, -1);
+        _store.getStoredObject(null, "/folder/file");
+        _backend.setResourceContent(null, "/folder/file",
+                new ByteArrayInputStream(new byte[3]), null, null);
+
+        assertEquals(3, _store.getStoredObject(null, "/folder/file")
+                .getResourceLength());
+    }
+
+    @Test
+    public void testWeightIsLimited() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            _backend.createResource(null, "/folder/" + i);
+        }
+        // five names and the folder outweigh the cache
+        assertEquals(5, _store.getChildrenNames(null, "/folder").length);
+        _backend.removeObject(null, "/folder/0");
+
+        assertEquals(4, _store.getChildrenNames(null, "/folder").length);
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.gv2011.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.gv2011.webdav.exceptions.WebdavException;
+
+import junit.framework.Assert;
+
+@SuppressWarnings("deprecation")
+public class ContentAddressedStoreTest extends Assert {
+
+    private static final String SHA256_OF_ABC = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    private Path _root;
+    private ContentAddressedStore _store;
+
+    @Before
+    public void setUp() throws Exception {
+        _root = Files.createTempDirectory("cas");
+        _store = new ContentAddressedStore(_root.toFile());
+        _store.begin(null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        _store.destroy();
+        delete(_root.toFile());
+    }
+
+    @Test
+    public void testIdenticalContentIsStoredOnce() throws Exception {
+        _store.createFolder(null, "/folder");
+        put("/folder/a", "abc");
+        put("/b", "abc");
+
+        assertEquals(1, blobs());
+        assertEquals("abc", get("/folder/a"));
+        assertEquals("abc", get("/b"));
+        assertEquals(3, _store.getResourceLength(null, "/b"));
+        assertTrue(Arrays.equals(new String[] { "a" }, _store
+                .getChildrenNames(null, "/folder")));
+    }
+
+    @Test
+    public void testHashIsETag() throws Exception {
+        put("/a", "abc");
+
+        final StoredObject so = _store.getStoredObject(null, "/a");
+        assertEquals(SHA256_OF_ABC, so.getETag());
+        assertEquals(3, so.getResourceLength());
+        assertNull(_store.getStoredObject(null, "/").getETag());
+    }
+
+    @Test
+    public void testCopySharesContent() throws Exception {
+        put("/a", "abc");
+        assertTrue(_store.copyObject(null, "/a", "/b"));
+        put("/a", "xyz");
+
+        assertEquals(2, blobs());
+        assertEquals("xyz", get("/a"));
+        assertEquals("abc", get("/b"));
+    }
+
+    @Test
+    public void testLastReferenceRemovesContent() throws Exception {
+        _store.createFolder(null, "/folder");
+        put("/folder/a", "abc");
+        put("/b", "abc");
+
+        _store.removeTree(null, "/folder",
+                new HashMap<String, WebdavException>());
+        assertEquals(1, blobs());
+        assertNull(_store.getStoredObject(null, "/folder"));
+
+        _store.removeObject(null, "/b");
+        assertEquals(0, blobs());
+    }
+
+    @Test
+    public void testMoveKeepsContent() throws Exception {
+        put("/a", "abc");
+        assertTrue(_store.moveObject(null, "/a", "/b"));
+
+        assertNull(_store.getStoredObject(null, "/a"));
+        assertEquals("abc", get("/b"));
+        assertEquals(1, blobs());
+    }
+
+    @Test
+    public void testNewResourceIsEmpty() throws Exception {
+        _store.createResource(null, "/a");
+        _store.createResource(null, "/b");
+
+        assertEquals("", get("/a"));
+        assertEquals(1, blobs());
+        _store.removeObject(null, "/a");
+        _store.removeObject(null, "/b");
+        assertEquals(0, blobs());
+    }
+
+    @Test
+    public void testCopyReleasesReplacedContent() throws Exception {
+        put("/a", "abc");
+        put("/b", "xyz");
+        assertTrue(_store.copyObject(null, "/a", "/b"));
+
+        assertEquals(1, blobs());
+        assertEquals("abc", get("/b"));
+    }
+
+    @Test
+    public void testConcurrentWritesReleasePreviousContentOnce()
+            throws Exception {
+        put("/shared", "old");
+        for (int i = 0; i < 50; i++) {
+            put("/a", "old");
+            final CountDownLatch start = new CountDownLatch(1);
+            final ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                final List<Future<?>> puts = new ArrayList<>();
+                for (final String content : new String[] { "new1", "new2" }) {
+                    puts.add(executor.submit(() -> {
+                        start.await();
+                        put("/a", content);
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (final Future<?> f : puts) {
+                    f.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            assertEquals("old", get("/shared"));
+            assertEquals(2, blobs());
+        }
+    }
+
+    private void put(final String uri, final String content) {
+        if (_store.getStoredObject(null, uri) == null) {
+            _store.createResource(null, uri);
+        }
+        _store.setResourceContent(null, uri, new ByteArrayInputStream(content
+                .getBytes()), null, null);
+    }
+
+    private String get(final String uri) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = _store.getResourceContent(null, uri)) {
+            int read;
+            final byte[] buffer = new byte[16];
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return new String(out.toByteArray());
+    }
+
+    private long blobs() throws IOException {
+        try (Stream<Path> files = Files.walk(_root.resolve("blobs"))) {
+            return files.filter(Files::isRegularFile).filter(
+                    f -> !f.getFileName().toString().endsWith(".refs")).count();
+        }
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.gv2011.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+@SuppressWarnings("deprecation")
+public class ContentCachingStoreTest extends Assert {
+
+    private MemoryStore _backend;
+    private int _reads;
+    private int _lookups;
+    private IWebdavStore _counting;
+    private ContentCachingStore _store;
+
+    @Before
+    public void setUp() throws Exception {
+        _backend = new MemoryStore();
+        _counting = new DelegatingStore(_backend) {
+            @Override
+            public InputStream getResourceContent(final ITransaction transaction,
+                    final String resourceUri) {
+                _reads++;
+                return super.getResourceContent(transaction, resourceUri);
+            }
+
+            @Override
+            public StoredObject getStoredObject(final ITransaction transaction,
+                    final String uri) {
+                _lookups++;
+                return super.getStoredObject(transaction, uri);
+            }
+        };
+        _store = new ContentCachingStore(_counting, 6, 8);
+        put("/a", "aaaa");
+        put("/b", "bbbb");
+        put("/c", "cccc");
+        put("/large", "0123456");
+    }
+
+    @Test
+    public void testContentIsCached() throws Exception {
+        assertEquals("aaaa", get("/a"));
+        final InputStream in = _store.getResourceContent(null, "/a/");
+        assertTrue(in instanceof ByteBufferInputStream);
+        assertEquals("aaaa", read(in));
+        assertEquals(1, _reads);
+        assertEquals(4, _store.getSize());
+    }
+
+    @Test
+    public void testMetadataCacheValidatesContent() throws Exception {
+        final ContentCachingStore store = new ContentCachingStore(
+                new CachingStore(_counting, 10, 60000), 6, 8);
+        assertEquals("aaaa", read(store.getResourceContent(null, "/a")));
+        _lookups = 0;
+
+        final InputStream in = store.getResourceContent(null, "/a");
+        assertTrue(in instanceof ByteBufferInputStream);
+        assertEquals("aaaa", read(in));
+        assertEquals(0, _lookups);
+        assertEquals(1, _reads);
+    }
+
+    @Test
+    public void testChangedContentIsReloaded() throws Exception {
+        assertEquals("aaaa", get("/a"));
+        put("/a", "abc");
+        assertEquals("abc", get("/a"));
+        assertEquals("abc", get("/a"));
+        assertEquals(2, _reads);
+
+        _store.setResourceContent(null, "/a", new ByteArrayInputStream("xyz"
+                .getBytes()), null, null);
+        assertEquals(0, _store.getSize());
+        assertEquals("xyz", get("/a"));
+    }
+
+    @Test
+    public void testLargeContentIsNotCached() throws Exception {
+        assertEquals("0123456", get("/large"));
+        assertEquals("0123456", get("/large"));
+        assertEquals(2, _reads);
+        assertEquals(0, _store.getSize());
+    }
+
+    @Test
+    public void testRareContentDoesNotReplaceFrequentContent() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            get("/a");
+            get("/b");
+        }
+        assertEquals(2, _reads);
+
+        get("/c");
+        get("/c");
+        assertEquals(4, _reads);
+        get("/a");
+        get("/b");
+        assertEquals(4, _reads);
+
+        // once it is requested more often, it replaces the eldest
+        get("/c");
+        get("/c");
+        get("/c");
+        assertEquals(7, _reads);
+        get("/c");
+        get("/b");
+        assertEquals(7, _reads);
+        get("/a");
+        assertEquals(8, _reads);
+    }
+
+    private void put(final String uri, final String content) {
+        if (_backend.getStoredObject(null, uri) == null) {
+            _backend.createResource(null, uri);
+        }
+        _backend.setResourceContent(null, uri, new ByteArrayInputStream(
+                content.getBytes()), null, null);
+    }
+
+    private String get(final String uri) throws IOException {
+        return read(_store.getResourceContent(null, uri));
+    }
+
+    private static String read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            int read;
+            final byte[] buffer = new byte[3];
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return new String(out.toByteArray());
+    }
+}
@@ -0,0 +1,356 @@
+package com.github.gv2011.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.gv2011.webdav.exceptions.ObjectNotFoundException;
+import com.github.gv2011.webdav.exceptions.WebdavException;
+
+import junit.framework.Assert;
+
+@SuppressWarnings("deprecation")
+public class LocalFileSystemStoreTest extends Assert {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private LocalFileSystemStore _store;
+    private ITransaction _transaction;
+
+    @Before
+    public void setUp() throws Exception {
+        _store = new LocalFileSystemStore(_folder.getRoot());
+        _transaction = _store.begin(null);
+    }
+
+    @Test
+    public void testStoredObjectOfMissingPathIsNull() throws Exception {
+        assertNull(_store.getStoredObject(_transaction, "/missing"));
+        assertNull(_store.getStoredObject(_transaction, "/missing/child"));
+    }
+
+    @Test
+    public void testStoredObjectOfResource() throws Exception {
+        _store.createResource(_transaction, "/file.txt");
+        _store.setResourceContent(_transaction, "/file.txt",
+                new ByteArrayInputStream(new byte[] { 1, 2, 3 }), null, null);
+        final Path file = _folder.getRoot().toPath().resolve("file.txt");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000000000000L));
+
+        final StoredObject so = _store.getStoredObject(_transaction, "/file.txt");
+
+        assertTrue(so.isResource());
+        assertEquals(3, so.getResourceLength());
+        assertEquals(1000000000000L, so.getLastModified().getTime());
+        assertEquals(Files.readAttributes(file,
+                java.nio.file.attribute.BasicFileAttributes.class)
+                .creationTime().toMillis(), so.getCreationDate().getTime());
+    }
+
+    @Test
+    public void testStoredObjectOfFolder() throws Exception {
+        _store.createFolder(_transaction, "/folder");
+
+        final StoredObject so = _store.getStoredObject(_transaction, "/folder");
+
+        assertTrue(so.isFolder());
+        assertTrue(new File(_folder.getRoot(), "folder").isDirectory());
+    }
+
+    @Test
+    public void testRootIsResolvedForEmptyAndSlashUri() throws Exception {
+        assertTrue(_store.getStoredObject(_transaction, "").isFolder());
+        assertTrue(_store.getStoredObject(_transaction, "/").isFolder());
+    }
+
+    @Test
+    public void testContentLengthHintDoesNotChangeContent() throws Exception {
+        final byte[] content = new byte[100000];
+        Arrays.fill(content, (byte) 7);
+        _store.createResource(_transaction, "/file");
+
+        assertEquals(content.length, _store.setResourceContent(_transaction,
+                "/file", new ByteArrayInputStream(content), null, null,
+                2L * content.length));
+        assertEquals(10, _store.setResourceContent(_transaction, "/file",
+                new ByteArrayInputStream(content, 0, 10), null, null,
+                content.length));
+
+        final Path file = _folder.getRoot().toPath().resolve("file");
+        assertTrue(Arrays.equals(Arrays.copyOf(content, 10),
+                Files.readAllBytes(file)));
+    }
+
+    @Test
+    public void testStagedWriteReplacesContent() throws Exception {
+        _store.setStagedWrites(true);
+        _store.createResource(_transaction, "/file");
+        _store.setResourceContent(_transaction, "/file",
+                new ByteArrayInputStream(new byte[] { 1, 2, 3 }), null, null);
+
+        assertEquals(2, _store.setResourceContent(_transaction, "/file",
+                new ByteArrayInputStream(new byte[] { 4, 5 }), null, null));
+
+        final Path file = _folder.getRoot().toPath().resolve("file");
+        assertTrue(Arrays.equals(new byte[] { 4, 5 }, Files.readAllBytes(file)));
+        assertEquals(1, _folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testFailedStagedWriteKeepsOldContent() throws Exception {
+        _store.setStagedWrites(true);
+        _store.createResource(_transaction, "/file");
+        _store.setResourceContent(_transaction, "/file",
+                new ByteArrayInputStream(new byte[] { 1, 2, 3 }), null, null);
+
+        try {
+            _store.setResourceContent(_transaction, "/file", new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    throw new IOException("client disconnected");
+                }
+            }, null, null);
+            fail();
+        } catch (final WebdavException e) {
+            // expected
+        }
+
+        final Path file = _folder.getRoot().toPath().resolve("file");
+        assertTrue(Arrays.equals(new byte[] { 1, 2, 3 },
+                Files.readAllBytes(file)));
+        assertEquals(1, _folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testResourceWriterWritesPieces() throws Exception {
+        _store.createResource(_transaction, "/file");
+        final ResourceWriter writer = _store.openResourceWriter(_transaction,
+                "/file", null, null, 100000);
+        writer.write(new byte[] { 0, 1, 2 }, 1, 2);
+        writer.write(new byte[] { 3 }, 0, 1);
+
+        assertEquals(3, writer.finish());
+        assertContent(new byte[] { 1, 2, 3 }, "/file");
+    }
+
+    @Test
+    public void testAbortedStagedWriterKeepsOldContent() throws Exception {
+        _store.setStagedWrites(true);
+        _store.createResource(_transaction, "/file");
+        _store.setResourceContent(_transaction, "/file",
+                new ByteArrayInputStream(new byte[] { 1, 2, 3 }), null, null);
+
+        final ResourceWriter writer = _store.openResourceWriter(_transaction,
+                "/file", null, null, -1);
+        writer.write(new byte[] { 4, 5 }, 0, 2);
+        assertEquals(2, _folder.getRoot().list().length);
+        writer.abort();
+
+        assertContent(new byte[] { 1, 2, 3 }, "/file");
+        assertEquals(1, _folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testMappedReadFollowsChangedContent() throws Exception {
+        _store.setStagedWrites(true);
+        _store.setMappedReads(1024, 4096);
+        try {
+            _store.createResource(_transaction, "/file");
+            _store.setResourceContent(_transaction, "/file",
+                    new ByteArrayInputStream(new byte[] { 1, 2, 3 }), null, null);
+
+            assertTrue(_store.getResourceContent(_transaction, "/file")
+                    instanceof ByteBufferInputStream);
+            assertContent(new byte[] { 1, 2, 3 }, "/file");
+            assertContent(new byte[] { 1, 2, 3 }, "/file");
+
+            _store.setResourceContent(_transaction, "/file",
+                    new ByteArrayInputStream(new byte[] { 4, 5 }), null, null);
+
+            assertContent(new byte[] { 4, 5 }, "/file");
+        } finally {
+            _store.destroy();
+        }
+    }
+
+    @Test
+    public void testLargeFilesAreNotMapped() throws Exception {
+        _store.setMappedReads(2, 4096);
+        try {
+            _store.createResource(_transaction, "/file");
+            _store.setResourceContent(_transaction, "/file",
+                    new ByteArrayInputStream(new byte[] { 1, 2, 3 }), null, null);
+
+            final InputStream in = _store.getResourceContent(_transaction,
+                    "/file");
+            in.close();
+            assertFalse(in instanceof ByteBufferInputStream);
+            assertContent(new byte[] { 1, 2, 3 }, "/file");
+        } finally {
+            _store.destroy();
+        }
+    }
+
+    private void assertContent(final byte[] expected, final String uri)
+            throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = _store.getResourceContent(_transaction, uri)) {
+            int read;
+            final byte[] buffer = new byte[16];
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        assertTrue(Arrays.equals(expected, out.toByteArray()));
+    }
+
+    @Test
+    public void testChildrenAreListedWithMetadata() throws Exception {
+        _store.createFolder(_transaction, "/folder");
+        _store.createFolder(_transaction, "/folder/sub");
+        _store.createResource(_transaction, "/folder/file");
+        _store.setResourceContent(_transaction, "/folder/file",
+                new ByteArrayInputStream(new byte[] { 1, 2 }), null, null);
+
+        final Map<String, StoredObject> children = _store.getChildren(
+                _transaction, "/folder");
+
+        assertEquals(2, children.size());
+        assertTrue(children.get("sub").isFolder());
+        assertTrue(children.get("file").isResource());
+        assertEquals(2, children.get("file").getResourceLength());
+        assertNull(_store.getChildren(_transaction, "/folder/file"));
+        assertNull(_store.getChildren(_transaction, "/missing"));
+    }
+
+    @Test
+    public void testMoveObjectRenamesFolderWithChildren() throws Exception {
+        _store.createFolder(_transaction, "/source");
+        _store.createResource(_transaction, "/source/file");
+
+        assertTrue(_store.moveObject(_transaction, "/source", "/destination"));
+
+        assertNull(_store.getStoredObject(_transaction, "/source"));
+        assertTrue(_store.getStoredObject(_transaction, "/destination")
+                .isFolder());
+        assertTrue(_store.getStoredObject(_transaction, "/destination/file")
+                .isResource());
+    }
+
+    @Test
+    public void testCopyObjectCopiesContent() throws Exception {
+        _store.createResource(_transaction, "/source");
+        _store.setResourceContent(_transaction, "/source",
+                new ByteArrayInputStream(new byte[] { 1, 2, 3 }), null, null);
+
+        assertTrue(_store.copyObject(_transaction, "/source", "/destination"));
+
+        assertEquals(3, _store.getStoredObject(_transaction, "/source")
+                .getResourceLength());
+        assertEquals(3, _store.getStoredObject(_transaction, "/destination")
+                .getResourceLength());
+    }
+
+    @Test
+    public void testResourceChannelAllowsPositionalReads() throws Exception {
+        _store.createResource(_transaction, "/file");
+        _store.setResourceContent(_transaction, "/file",
+                new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5 }), null,
+                null);
+
+        assertTrue(_store.supportsResourceChannel());
+        try (SeekableByteChannel channel = _store.getResourceChannel(
+                _transaction, "/file")) {
+            assertEquals(5, channel.size());
+            channel.position(3);
+            final ByteBuffer buffer = ByteBuffer.allocate(5);
+            assertEquals(2, channel.read(buffer));
+            assertEquals(4, buffer.get(0));
+            assertEquals(5, buffer.get(1));
+        }
+    }
+
+    @Test(expected = ObjectNotFoundException.class)
+    public void testResourceChannelOfMissingResource() throws Exception {
+        _store.getResourceChannel(_transaction, "/missing");
+    }
+
+    @Test
+    public void testRemoveTreeRemovesAllContent() throws Exception {
+        createTree();
+
+        final Map<String, WebdavException> failures = new HashMap<>();
+        _store.removeTree(_transaction, "/tree", failures);
+
+        assertTrue(failures.isEmpty());
+        assertNull(_store.getStoredObject(_transaction, "/tree"));
+    }
+
+    @Test
+    public void testRemoveTreeInParallel() throws Exception {
+        createTree();
+        _store.setRemoveParallelism(4);
+        try {
+            final Map<String, WebdavException> failures = new HashMap<>();
+            _store.removeTree(_transaction, "/tree/", failures);
+
+            assertTrue(failures.isEmpty());
+            assertNull(_store.getStoredObject(_transaction, "/tree"));
+        } finally {
+            _store.destroy();
+        }
+    }
+
+    @Test
+    public void testChildrenAreListedInParallel() throws Exception {
+        _store.createFolder(_transaction, "/folder");
+        for (int i = 0; i < 50; i++) {
+            _store.createResource(_transaction, "/folder/file" + i);
+        }
+        _store.createFolder(_transaction, "/folder/sub");
+        final Map<String, StoredObject> expected = _store.getChildren(
+                _transaction, "/folder");
+
+        _store.setListParallelism(4);
+        try {
+            final Map<String, StoredObject> children = _store.getChildren(
+                    _transaction, "/folder");
+
+            assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(
+                    children.keySet()));
+            assertTrue(children.get("sub").isFolder());
+            assertTrue(children.get("file7").isResource());
+        } finally {
+            _store.destroy();
+        }
+    }
+
+    private void createTree() {
+        _store.createFolder(_transaction, "/tree");
+        for (int i = 0; i < 3; i++) {
+            _store.createFolder(_transaction, "/tree/folder" + i);
+            _store.createFolder(_transaction, "/tree/folder" + i + "/sub");
+            _store.createResource(_transaction, "/tree/folder" + i + "/file");
+            _store.createResource(_transaction, "/tree/folder" + i
+                    + "/sub/file");
+        }
+        _store.createResource(_transaction, "/tree/file");
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.gv2011.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.gv2011.webdav.exceptions.WebdavException;
+
+import junit.framework.Assert;
+
+@SuppressWarnings("deprecation")
+public class MemoizingStoreTest extends Assert {
+
+    private MemoryStore _backend;
+    private int _lookups;
+    private MemoizingStore _store;
+
+    @Before
+    public void setUp() throws Exception {
+        _backend = new MemoryStore();
+        _store = new MemoizingStore(new DelegatingStore(_backend) {
+            @Override
+            public StoredObject getStoredObject(final ITransaction transaction,
+                    final String uri) {
+                _lookups++;
+                return super.getStoredObject(transaction, uri);
+            }
+        });
+        _backend.createFolder(null, "/folder");
+    }
+
+    @Test
+    public void testLookupsAreRememberedPerTransaction() throws Exception {
+        final ITransaction transaction = _store.begin(null);
+        assertTrue(transaction instanceof Transaction);
+
+        assertTrue(_store.getStoredObject(transaction, "/folder/").isFolder());
+        assertNull(_store.getStoredObject(transaction, "/missing"));
+        assertNull(_store.getStoredObject(transaction, "/missing"));
+        assertEquals(2, _lookups);
+
+        _store.commit(transaction);
+        final ITransaction other = _store.begin(null);
+        _store.getStoredObject(other, "/folder");
+        assertEquals(3, _lookups);
+        _store.rollback(other);
+    }
+
+    @Test
+    public void testChangedStoredObjectsAreKept() throws Exception {
+        final StoredObject live = new StoredObject();
+        final MemoizingStore store = new MemoizingStore(new DelegatingStore(
+                _backend) {
+            @Override
+            public StoredObject getStoredObject(final ITransaction transaction,
+                    final String uri) {
+                return live;
+            }
+        });
+        final ITransaction transaction = store.begin(null);
+
+        store.getStoredObject(transaction, "/file").setNullResource(true);
+        assertTrue(store.getStoredObject(transaction, "/file")
+                .isNullResource());
+        assertTrue(live.isNullResource());
+        store.rollback(transaction);
+    }
+
+    @Test
+    public void testOwnWritesAreSeen() throws Exception {
+        final ITransaction transaction = _store.begin(null);
+        assertNull(_store.getStoredObject(transaction, "/folder/file"));
+        assertEquals(0, _store.getChildrenNames(transaction, "/folder").length);
+
+        _store.createResource(transaction, "/folder/file");
+        assertEquals(0, _store.getStoredObject(transaction, "/folder/file")
+                .getResourceLength());
+        assertEquals(1, _store.getChildrenNames(transaction, "/folder").length);
+
+        _store.setResourceContent(transaction, "/folder/file",
+                new ByteArrayInputStream(new byte[3]), null, null);
+        assertEquals(3, _store.getStoredObject(transaction, "/folder/file")
+                .getResourceLength());
+
+        _store.removeTree(transaction, "/folder",
+                new HashMap<String, WebdavException>());
+        assertNull(_store.getStoredObject(transaction, "/folder/file"));
+        assertNull(_store.getStoredObject(transaction, "/folder"));
+        _store.commit(transaction);
+
+        assertNull(_backend.getStoredObject(null, "/folder"));
+    }
+
+    @Test
+    public void testStoreTransactionIsUnwrapped() throws Exception {
+        final ITransaction transaction = _store.begin(null);
+        _store.createResource(transaction, "/file");
+        assertNull(_backend.getStoredObject(null, "/file"));
+        _store.rollback(transaction);
+
+        assertNull(_store.getStoredObject(_store.begin(null), "/file"));
+    }
+}
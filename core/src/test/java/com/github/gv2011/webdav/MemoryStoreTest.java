@@ -0,0 +1,202 @@
+package com.github.gv2011.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.gv2011.webdav.exceptions.ObjectAlreadyExistsException;
+import com.github.gv2011.webdav.exceptions.ObjectNotFoundException;
+import com.github.gv2011.webdav.exceptions.WebdavException;
+
+import junit.framework.Assert;
+
+@SuppressWarnings("deprecation")
+public class MemoryStoreTest extends Assert {
+
+    private MemoryStore _store;
+
+    @Before
+    public void setUp() throws Exception {
+        _store = new MemoryStore(4, 64);
+    }
+
+    @Test
+    public void testContentSpanningChunks() throws Exception {
+        final ITransaction transaction = _store.begin(null);
+        _store.createFolder(transaction, "/folder");
+        _store.createResource(transaction, "/folder/file");
+        assertEquals(10, _store.setResourceContent(transaction, "/folder/file",
+                content(10), null, null));
+        _store.commit(transaction);
+
+        final ITransaction reader = _store.begin(null);
+        final StoredObject so = _store.getStoredObject(reader, "/folder/file/");
+        assertTrue(so.isResource());
+        assertEquals(10, so.getResourceLength());
+        assertTrue(_store.getStoredObject(reader, "/").isFolder());
+        assertTrue(Arrays.equals(bytes(content(10)), read(reader,
+                "/folder/file")));
+        assertTrue(Arrays.equals(new String[] { "file" }, _store
+                .getChildrenNames(reader, "/folder")));
+    }
+
+    @Test
+    public void testChangesAreOnlyVisibleToTheirTransactionUntilCommit()
+            throws Exception {
+        final ITransaction writer = _store.begin(null);
+        final ITransaction reader = _store.begin(null);
+        _store.createFolder(writer, "/folder");
+        _store.createResource(writer, "/folder/file");
+
+        assertNotNull(_store.getStoredObject(writer, "/folder/file"));
+        assertEquals(1, _store.getChildrenNames(writer, "/folder").length);
+        assertNull(_store.getStoredObject(reader, "/folder"));
+
+        _store.commit(writer);
+
+        assertNotNull(_store.getStoredObject(reader, "/folder/file"));
+    }
+
+    @Test
+    public void testRollbackDiscardsChangesAndFreesContent() throws Exception {
+        final ITransaction transaction = _store.begin(null);
+        _store.createResource(transaction, "/file");
+        _store.setResourceContent(transaction, "/file", content(3), null, null);
+        _store.commit(transaction);
+
+        _store.setResourceContent(transaction, "/file", content(10), null, null);
+        _store.removeObject(transaction, "/file");
+        assertNull(_store.getStoredObject(transaction, "/file"));
+        _store.rollback(transaction);
+
+        assertTrue(Arrays.equals(bytes(content(3)), read(transaction, "/file")));
+
+        // the pool holds 16 chunks, the rolled back content must be reusable
+        for (int i = 0; i < 10; i++) {
+            _store.setResourceContent(transaction, "/file", content(40), null,
+                    null);
+            _store.rollback(transaction);
+        }
+    }
+
+    @Test
+    public void testCapacityIsLimited() throws Exception {
+        _store.createResource(null, "/file");
+        try {
+            _store.setResourceContent(null, "/file", content(65), null, null);
+            fail();
+        } catch (final WebdavException e) {
+            // expected
+        }
+        assertEquals(0, _store.getStoredObject(null, "/file")
+                .getResourceLength());
+        assertEquals(64, _store.getAllocatedBytes());
+    }
+
+    @Test
+    public void testCopySharesContentUntilReleased() throws Exception {
+        _store.createResource(null, "/source");
+        _store.setResourceContent(null, "/source", content(40), null, null);
+        final long allocated = _store.getAllocatedBytes();
+
+        assertTrue(_store.copyObject(null, "/source", "/copy"));
+        _store.removeObject(null, "/source");
+
+        assertTrue(Arrays.equals(bytes(content(40)), read(null, "/copy")));
+        assertEquals(allocated, _store.getAllocatedBytes());
+    }
+
+    @Test
+    public void testOpenStreamKeepsReplacedContent() throws Exception {
+        _store.createResource(null, "/file");
+        _store.setResourceContent(null, "/file", content(8), null, null);
+
+        final InputStream in = _store.getResourceContent(null, "/file");
+        _store.setResourceContent(null, "/file", new ByteArrayInputStream(
+                new byte[] { 9 }), null, null);
+
+        assertTrue(Arrays.equals(bytes(content(8)), bytes(in)));
+    }
+
+    @Test
+    public void testOverwriteMovesLastModified() throws Exception {
+        _store.createResource(null, "/file");
+        _store.setResourceContent(null, "/file", content(8), null, null);
+        final StoredObject written = _store.getStoredObject(null, "/file");
+        Thread.sleep(10);
+
+        _store.setResourceContent(null, "/file", content(8), null, null);
+        final StoredObject rewritten = _store.getStoredObject(null, "/file");
+
+        assertEquals(written.getCreationDate(), rewritten.getCreationDate());
+        assertTrue(rewritten.getLastModified().after(
+                written.getLastModified()));
+        assertEquals(8, rewritten.getResourceLength());
+    }
+
+    @Test
+    public void testFolderMustBeEmptyToBeRemoved() throws Exception {
+        final ITransaction transaction = _store.begin(null);
+        _store.createFolder(transaction, "/folder");
+        _store.createResource(transaction, "/folder/file");
+        _store.commit(transaction);
+
+        try {
+            _store.removeObject(transaction, "/folder");
+            fail();
+        } catch (final WebdavException e) {
+            // expected
+        }
+        _store.removeTree(transaction, "/folder",
+                new HashMap<String, WebdavException>());
+        assertNotNull(_store.getStoredObject(null, "/folder/file"));
+        _store.commit(transaction);
+
+        assertNull(_store.getStoredObject(null, "/folder"));
+        assertEquals(0, _store.getChildrenNames(null, "/").length);
+    }
+
+    @Test(expected = ObjectAlreadyExistsException.class)
+    public void testCreateExistingObject() throws Exception {
+        _store.createFolder(null, "/folder");
+        _store.createResource(null, "/folder");
+    }
+
+    @Test(expected = ObjectNotFoundException.class)
+    public void testCreateInMissingFolder() throws Exception {
+        _store.createResource(null, "/missing/file");
+    }
+
+    private static InputStream content(final int length) {
+        final byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) i;
+        }
+        return new ByteArrayInputStream(content);
+    }
+
+    private byte[] read(final ITransaction transaction, final String uri)
+            throws IOException {
+        return bytes(_store.getResourceContent(transaction, uri));
+    }
+
+    private static byte[] bytes(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            int read;
+            final byte[] buffer = new byte[3];
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.gv2011.webdav;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+@SuppressWarnings("deprecation")
+public class NegativeCachingStoreTest extends Assert {
+
+    private MemoryStore _backend;
+    private int _lookups;
+    private NegativeCachingStore _store;
+
+    @Before
+    public void setUp() throws Exception {
+        _backend = new MemoryStore();
+        _store = new NegativeCachingStore(new DelegatingStore(_backend) {
+            @Override
+            public StoredObject getStoredObject(final ITransaction transaction,
+                    final String uri) {
+                _lookups++;
+                return super.getStoredObject(transaction, uri);
+            }
+        }, 2, 60000);
+    }
+
+    @Test
+    public void testMissingObjectIsLookedUpOnce() throws Exception {
+        assertNull(_store.getStoredObject(null, "/desktop.ini"));
+        assertNull(_store.getStoredObject(null, "/desktop.ini/"));
+        assertEquals(1, _lookups);
+    }
+
+    @Test
+    public void testCreationInvalidates() throws Exception {
+        assertNull(_store.getStoredObject(null, "/folder"));
+        assertNull(_store.getStoredObject(null, "/file"));
+        assertNull(_store.getStoredObject(null, "/copy"));
+
+        _store.createFolder(null, "/folder");
+        _store.createResource(null, "/file");
+        _store.setResourceContent(null, "/file", new ByteArrayInputStream(
+                new byte[1]), null, null);
+        assertTrue(_store.copyObject(null, "/file", "/copy"));
+
+        assertTrue(_store.getStoredObject(null, "/folder").isFolder());
+        assertTrue(_store.getStoredObject(null, "/file").isResource());
+        assertTrue(_store.getStoredObject(null, "/copy").isResource());
+    }
+
+    @Test
+    public void testCommitInvalidates() throws Exception {
+        final ITransaction creating = _store.begin(null);
+        final ITransaction reading = _store.begin(null);
+
+        _store.createResource(creating, "/file");
+        // not visible to other transactions before the commit
+        assertNull(_store.getStoredObject(reading, "/file"));
+
+        _store.commit(creating);
+        assertNotNull(_store.getStoredObject(reading, "/file"));
+        _store.commit(reading);
+    }
+
+    @Test
+    public void testEntriesAreLimited() throws Exception {
+        _store.getStoredObject(null, "/a");
+        _store.getStoredObject(null, "/b");
+        _store.getStoredObject(null, "/a");
+        _store.getStoredObject(null, "/c");
+        assertEquals(3, _lookups);
+
+        _store.getStoredObject(null, "/b");
+        assertEquals(4, _lookups);
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception {
+        _store = new NegativeCachingStore(_backend, 2, -1);
+        assertNull(_store.getStoredObject(null, "/file"));
+        _backend.createResource(null, "/file");
+
+        assertNotNull(_store.getStoredObject(null, "/file"));
+    }
+}
@@ -51,7 +51,7 @@ public class WebdavServletTest extends MockTest {
         mockServletConfig = new MockServletConfig(mockServletContext);
         mockHttpSession = new MockHttpSession(mockServletContext);
         mockServletContext = new MockServletContext();
-        mockReq = new MockHttpServletRequest(mockServletContext);
+        mockReq = new ContentLengthRequest(mockServletContext);
         mockRes = new MockHttpServletResponse();
 
         mockPrincipal = new MockPrincipal("Admin", new String[] { "Admin",
@@ -107,6 +107,54 @@ public class WebdavServletTest extends MockTest {
                 exactly(2).of(servletConfig).getInitParameter(
                         "no-content-length-headers");
                 will(returnValue("0"));
+
+                oneOf(servletConfig).getInitParameter("remove-parallelism");
+                will(returnValue(null));
+
+                oneOf(servletConfig).getInitParameter("list-parallelism");
+                will(returnValue(null));
+
+                oneOf(servletConfig).getInitParameter("staged-writes");
+                will(returnValue(null));
+
+                oneOf(servletConfig).getInitParameter("mapped-read-max-size");
+                will(returnValue(null));
+
+                oneOf(servletConfig).getInitParameter("mapped-read-cache-size");
+                will(returnValue(null));
+
+                oneOf(servletConfig).getInitParameter("content-cache-size");
+                will(returnValue(null));
+
+                oneOf(servletConfig).getInitParameter("metadata-cache-size");
+                will(returnValue(null));
+
+                oneOf(servletConfig).getInitParameter("negative-cache-size");
+                will(returnValue(null));
+
+                oneOf(servletConfig).getInitParameter("async-get");
+                will(returnValue(null));
+
+                oneOf(servletConfig).getInitParameter("async-put");
+                will(returnValue(null));
+
+                oneOf(servletConfig).getInitParameter("async-timeout");
+                will(returnValue(null));
+
+                oneOf(servletConfig).getInitParameter("propfind-finite-depth");
+                will(returnValue(null));
+
+                oneOf(servletConfig).getInitParameter("propfind-max-nodes");
+                will(returnValue(null));
+
+                oneOf(servletConfig).getInitParameter("propfind-time-budget");
+                will(returnValue(null));
+
+                oneOf(servletConfig).getInitParameter("propfind-cache-ttl");
+                will(returnValue(null));
+
+                oneOf(servletConfig).getInitParameter("propfind-cache-size");
+                will(returnValue(null));
             }
         });
 
@@ -162,4 +210,21 @@ public class WebdavServletTest extends MockTest {
 
         _mockery.assertIsSatisfied();
     }
+
+    /**
+     * The spring mock predates servlet 3.1.
+     */
+    @SuppressWarnings("unchecked")
+    private static class ContentLengthRequest extends MockHttpServletRequest {
+
+        private ContentLengthRequest(final ServletContext servletContext) {
+            super(servletContext);
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            final String contentLength = getHeader("Content-Length");
+            return contentLength == null ? -1 : Long.parseLong(contentLength);
+        }
+    }
 }
@@ -0,0 +1,48 @@
+package com.github.gv2011.webdav.fromcatalina;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+@SuppressWarnings("deprecation")
+public class XMLWriterTest extends Assert {
+
+    @Test
+    public void testStreamingWriterPassesOnFullBuffers() throws Exception {
+        final StringWriter out = new StringWriter();
+        final XMLWriter streaming = new XMLWriter(out, namespaces(), 64);
+        final XMLWriter buffered = new XMLWriter(namespaces());
+
+        write(streaming, 1);
+        assertEquals(0, out.getBuffer().length());
+
+        write(streaming, 99);
+        write(buffered, 1);
+        write(buffered, 99);
+        final int written = out.getBuffer().length();
+        assertTrue(written > 0);
+        assertTrue(streaming._buffer.length() <= 64 + 20);
+
+        streaming.sendData();
+        assertTrue(out.getBuffer().length() > written);
+        assertEquals(buffered.toString(), out.toString());
+    }
+
+    private static void write(final XMLWriter writer, final int elements) {
+        for (int i = 0; i < elements; i++) {
+            writer.writeElement("DAV::href", XMLWriter.OPENING);
+            writer.writeText("/" + i);
+            writer.writeElement("DAV::href", XMLWriter.CLOSING);
+        }
+    }
+
+    private static Map<String, String> namespaces() {
+        final Map<String, String> namespaces = new HashMap<>();
+        namespaces.put("DAV:", "D");
+        return namespaces;
+    }
+}
@@ -0,0 +1,192 @@
+package com.github.gv2011.webdav.methods;
+
+import java.io.ByteArrayInputStream;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jmock.Expectations;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.github.gv2011.webdav.ResourceWriter;
+import com.github.gv2011.webdav.WebdavStatus;
+import com.github.gv2011.webdav.exceptions.WebdavException;
+import com.github.gv2011.webdav.testutil.MockTest;
+
+public class AsyncContentReaderTest extends MockTest {
+
+    static AsyncContext mockAsyncContext;
+    static ResourceWriter mockWriter;
+    static HttpServletRequest mockReq;
+    static HttpServletResponse mockRes;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        mockAsyncContext = _mockery.mock(AsyncContext.class);
+        mockWriter = _mockery.mock(ResourceWriter.class);
+        mockReq = _mockery.mock(HttpServletRequest.class);
+        mockRes = _mockery.mock(HttpServletResponse.class);
+    }
+
+    @Test
+    public void testBodyIsWrittenAsItArrives() throws Exception {
+
+        final int[] released = new int[1];
+        final AsyncContentReader reader = new AsyncContentReader(
+                mockAsyncContext, new SlowInputStream(resourceContent),
+                mockWriter, mockRes, () -> released[0]++, 5);
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockWriter).write(with(any(byte[].class)), with(0),
+                        with(5));
+                oneOf(mockWriter).write(with(any(byte[].class)), with(0),
+                        with(3));
+                oneOf(mockWriter).finish();
+                will(returnValue(8L));
+                oneOf(mockAsyncContext).complete();
+            }
+        });
+
+        // data arrives in two pieces
+        reader.onDataAvailable();
+        reader.onDataAvailable();
+        reader.onAllDataRead();
+        reader.onComplete(null);
+        assertEquals(1, released[0]);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testFailedWriteAbortsAndCompletes() throws Exception {
+
+        final int[] released = new int[1];
+        final AsyncContentReader reader = new AsyncContentReader(
+                mockAsyncContext, new SlowInputStream(resourceContent),
+                mockWriter, mockRes, () -> released[0]++, 5);
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockWriter).write(with(any(byte[].class)), with(0),
+                        with(5));
+                will(throwException(new WebdavException("disk full")));
+                oneOf(mockAsyncContext).getRequest();
+                will(returnValue(mockReq));
+                oneOf(mockReq).setAttribute(
+                        AbstractMethod.ASYNC_FAILED_ATTRIBUTE, Boolean.TRUE);
+                oneOf(mockWriter).abort();
+                oneOf(mockRes).setStatus(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
+                oneOf(mockAsyncContext).complete();
+            }
+        });
+
+        reader.onDataAvailable();
+        reader.onComplete(null);
+        assertEquals(1, released[0]);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testFailedFinishIsMarked() throws Exception {
+
+        final int[] released = new int[1];
+        final AsyncContentReader reader = new AsyncContentReader(
+                mockAsyncContext, new SlowInputStream(resourceContent),
+                mockWriter, mockRes, () -> released[0]++, 8);
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockWriter).write(with(any(byte[].class)), with(0),
+                        with(8));
+                oneOf(mockWriter).finish();
+                will(throwException(new WebdavException("disk full")));
+                oneOf(mockAsyncContext).getRequest();
+                will(returnValue(mockReq));
+                oneOf(mockReq).setAttribute(
+                        AbstractMethod.ASYNC_FAILED_ATTRIBUTE, Boolean.TRUE);
+                oneOf(mockRes).setStatus(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
+                oneOf(mockAsyncContext).complete();
+            }
+        });
+
+        reader.onDataAvailable();
+        reader.onAllDataRead();
+        reader.onComplete(null);
+        assertEquals(1, released[0]);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testDisconnectAbortsAndIsMarked() throws Exception {
+
+        final int[] released = new int[1];
+        final AsyncContentReader reader = new AsyncContentReader(
+                mockAsyncContext, new SlowInputStream(resourceContent),
+                mockWriter, mockRes, () -> released[0]++, 5);
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockWriter).write(with(any(byte[].class)), with(0),
+                        with(5));
+                oneOf(mockAsyncContext).getRequest();
+                will(returnValue(mockReq));
+                oneOf(mockReq).setAttribute(
+                        AbstractMethod.ASYNC_FAILED_ATTRIBUTE, Boolean.TRUE);
+                oneOf(mockWriter).abort();
+            }
+        });
+
+        // the container completes the request without all data read
+        reader.onDataAvailable();
+        reader.onComplete(null);
+        assertEquals(1, released[0]);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    /**
+     * Input which has one buffer available per onDataAvailable.
+     */
+    private static class SlowInputStream extends ServletInputStream {
+
+        private final ByteArrayInputStream _in;
+        private boolean _ready;
+
+        private SlowInputStream(final byte[] content) {
+            _in = new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public int read() {
+            return _in.read();
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            return _in.read(b, off, len);
+        }
+
+        @Override
+        public boolean isReady() {
+            _ready = !_ready;
+            return _ready;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return _in.available() == 0;
+        }
+
+        @Override
+        public void setReadListener(final ReadListener readListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
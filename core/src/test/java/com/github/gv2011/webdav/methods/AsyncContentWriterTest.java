@@ -0,0 +1,96 @@
+package com.github.gv2011.webdav.methods;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.servlet.AsyncContext;
+
+import org.jmock.Expectations;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.github.gv2011.webdav.testutil.MockTest;
+
+public class AsyncContentWriterTest extends MockTest {
+
+    static AsyncContext mockAsyncContext;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        mockAsyncContext = _mockery.mock(AsyncContext.class);
+    }
+
+    @Test
+    public void testContentIsWrittenWhileClientIsReady() throws Exception {
+
+        final SlowOutputStream out = new SlowOutputStream();
+        final int[] released = new int[1];
+        final AsyncContentWriter writer = new AsyncContentWriter(
+                mockAsyncContext, new ByteArrayInputStream(resourceContent),
+                out, () -> released[0]++, 3);
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockAsyncContext).complete();
+            }
+        });
+
+        // the client takes one buffer per call
+        writer.onWritePossible();
+        assertEquals("<he", out.toString());
+        writer.onWritePossible();
+        writer.onWritePossible();
+        assertEquals("<hello/>", out.toString());
+        assertEquals(0, released[0]);
+        writer.onWritePossible();
+
+        writer.onComplete(null);
+        writer.onComplete(null);
+        assertEquals(1, released[0]);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testCancelledDownloadIsReleased() throws Exception {
+
+        final SlowOutputStream out = new SlowOutputStream();
+        final int[] released = new int[1];
+        final AsyncContentWriter writer = new AsyncContentWriter(
+                mockAsyncContext, new ByteArrayInputStream(resourceContent),
+                out, () -> released[0]++, 3);
+
+        _mockery.checking(new Expectations() {
+            {
+                // a GET has nothing to roll back
+                oneOf(mockAsyncContext).complete();
+            }
+        });
+
+        writer.onWritePossible();
+        writer.onError(new IOException("connection reset"));
+        writer.onComplete(null);
+        assertEquals(1, released[0]);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    private static class SlowOutputStream extends TestingOutputStream {
+
+        private boolean _ready;
+
+        @Override
+        public boolean isReady() {
+            _ready = !_ready;
+            return _ready;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+                throws IOException {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+    }
+}
@@ -77,6 +77,18 @@ public class DoCopyTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -208,6 +220,18 @@ public class DoCopyTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -256,6 +280,10 @@ public class DoCopyTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
                 will(returnValue(sourceFileSo));
 
+                oneOf(mockStore).copyObject(with(any(ITransaction.class)),
+                        with(any(String.class)), with(any(String.class)));
+                will(returnValue(false));
+
                 oneOf(mockStore).createResource(mockTransaction, destFilePath);
 
                 oneOf(mockStore).getResourceContent(mockTransaction,
@@ -287,6 +315,18 @@ public class DoCopyTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -315,6 +355,18 @@ public class DoCopyTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -362,6 +414,18 @@ public class DoCopyTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -427,6 +491,10 @@ public class DoCopyTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
                 will(returnValue(sourceFileSo));
 
+                oneOf(mockStore).copyObject(with(any(ITransaction.class)),
+                        with(any(String.class)), with(any(String.class)));
+                will(returnValue(false));
+
                 oneOf(mockStore).createResource(mockTransaction,
                         destCollectionPath + "/sourceFile");
 
@@ -461,6 +529,18 @@ public class DoCopyTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -517,6 +597,18 @@ public class DoCopyTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -567,6 +659,10 @@ public class DoCopyTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
                 will(returnValue(sourceSo));
 
+                oneOf(mockStore).copyObject(with(any(ITransaction.class)),
+                        with(any(String.class)), with(any(String.class)));
+                will(returnValue(false));
+
                 oneOf(mockStore).createResource(mockTransaction, destFilePath);
 
                 oneOf(mockStore).getResourceContent(mockTransaction,
@@ -598,6 +694,18 @@ public class DoCopyTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -658,6 +766,18 @@ public class DoCopyTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -705,6 +825,10 @@ public class DoCopyTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
                 will(returnValue(sourceSo));
 
+                oneOf(mockStore).copyObject(with(any(ITransaction.class)),
+                        with(any(String.class)), with(any(String.class)));
+                will(returnValue(false));
+
                 oneOf(mockStore).createResource(mockTransaction, destFilePath);
 
                 oneOf(mockStore).getResourceContent(mockTransaction,
@@ -734,6 +858,18 @@ public class DoCopyTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -786,4 +922,113 @@ public class DoCopyTest extends MockTest {
         _mockery.assertIsSatisfied();
 
     }
+
+    @Test
+    public void testMoveResourceRenamesInStoreIfSupported() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getHeader("Destination");
+                will(returnValue(destFilePath));
+
+                oneOf(mockReq).getServerName();
+                will(returnValue("serverName"));
+
+                oneOf(mockReq).getContextPath();
+                will(returnValue(""));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(destFilePath));
+
+                oneOf(mockReq).getServletPath();
+                will(returnValue("/servletPath"));
+
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(sourceFilePath));
+
+                oneOf(mockReq).getHeader("Overwrite");
+                will(returnValue("F"));
+
+                final StoredObject sourceFileSo = initFileStoredObject(resourceContent);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
+                will(returnValue(sourceFileSo));
+
+                oneOf(mockStore).getStoredObject(mockTransaction, destFilePath);
+                will(returnValue(null));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_CREATED);
+
+                oneOf(mockStore).moveObject(mockTransaction, sourceFilePath,
+                        destFilePath);
+                will(returnValue(true));
+            }
+        });
+
+        final ResourceLocks resLocks = new ResourceLocks();
+        final DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
+
+        final DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
+        assertTrue(doCopy.moveResource(mockTransaction, mockReq, mockRes));
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testCopyResourceCopiesInStoreIfSupported() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getHeader("Destination");
+                will(returnValue(destFilePath));
+
+                oneOf(mockReq).getServerName();
+                will(returnValue("serverName"));
+
+                oneOf(mockReq).getContextPath();
+                will(returnValue(""));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(destFilePath));
+
+                oneOf(mockReq).getServletPath();
+                will(returnValue("/servletPath"));
+
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(sourceFilePath));
+
+                oneOf(mockReq).getHeader("Overwrite");
+                will(returnValue("F"));
+
+                final StoredObject sourceFileSo = initFileStoredObject(resourceContent);
+
+                exactly(2).of(mockStore).getStoredObject(mockTransaction,
+                        sourceFilePath);
+                will(returnValue(sourceFileSo));
+
+                oneOf(mockStore).getStoredObject(mockTransaction, destFilePath);
+                will(returnValue(null));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_CREATED);
+
+                oneOf(mockStore).copyObject(mockTransaction, sourceFilePath,
+                        destFilePath);
+                will(returnValue(true));
+            }
+        });
+
+        final ResourceLocks resLocks = new ResourceLocks();
+        final DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
+
+        final DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
+        assertTrue(doCopy.copyResource(mockTransaction, mockReq, mockRes));
+
+        _mockery.assertIsSatisfied();
+    }
 }
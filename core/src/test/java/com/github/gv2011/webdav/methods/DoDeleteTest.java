@@ -1,11 +1,14 @@
 package com.github.gv2011.webdav.methods;
 
 import java.io.PrintWriter;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
 import org.junit.BeforeClass;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -14,6 +17,8 @@ import com.github.gv2011.webdav.ITransaction;
 import com.github.gv2011.webdav.IWebdavStore;
 import com.github.gv2011.webdav.StoredObject;
 import com.github.gv2011.webdav.WebdavStatus;
+import com.github.gv2011.webdav.exceptions.AccessDeniedException;
+import com.github.gv2011.webdav.exceptions.WebdavException;
 import com.github.gv2011.webdav.locking.LockedObject;
 import com.github.gv2011.webdav.locking.ResourceLocks;
 import com.github.gv2011.webdav.methods.DoDelete;
@@ -57,6 +62,18 @@ public class DoDeleteTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -87,6 +104,18 @@ public class DoDeleteTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -117,6 +146,18 @@ public class DoDeleteTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -131,41 +172,67 @@ public class DoDeleteTest extends MockTest {
                         sourceCollectionPath);
                 will(returnValue(folderSo));
 
-                oneOf(mockStore).getChildrenNames(mockTransaction,
-                        sourceCollectionPath);
-                will(returnValue(new String[] { "subFolder", "sourceFile" }));
+                oneOf(mockStore).removeTree(with(same(mockTransaction)),
+                        with(equal(sourceCollectionPath)),
+                        with(Expectations.<Map<String, WebdavException>> anything()));
+            }
+        });
 
-                final StoredObject fileSo = initFileStoredObject(resourceContent);
+        final DoDelete doDelete = new DoDelete(mockStore, new ResourceLocks(),
+                !readOnly);
 
-                oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
-                will(returnValue(fileSo));
+        doDelete.execute(mockTransaction, mockReq, mockRes);
 
-                oneOf(mockStore).removeObject(mockTransaction, sourceFilePath);
+        _mockery.assertIsSatisfied();
+    }
 
-                final StoredObject subFolderSo = initFolderStoredObject();
+    @Test
+    public void testDeleteFolderReportsMembersThatCannotBeRemoved()
+            throws Exception {
 
-                oneOf(mockStore).getStoredObject(mockTransaction,
-                        sourceCollectionPath + "/subFolder");
-                will(returnValue(subFolderSo));
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
 
-                oneOf(mockStore).getChildrenNames(mockTransaction,
-                        sourceCollectionPath + "/subFolder");
-                will(returnValue(new String[] { "fileInSubFolder" }));
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
 
-                final StoredObject fileInSubFolderSo = initFileStoredObject(resourceContent);
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
 
-                oneOf(mockStore).getStoredObject(mockTransaction,
-                        sourceCollectionPath + "/subFolder/fileInSubFolder");
-                will(returnValue(fileInSubFolderSo));
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
 
-                oneOf(mockStore).removeObject(mockTransaction,
-                        sourceCollectionPath + "/subFolder/fileInSubFolder");
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
 
-                oneOf(mockStore).removeObject(mockTransaction,
-                        sourceCollectionPath + "/subFolder");
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(sourceCollectionPath));
 
-                oneOf(mockStore).removeObject(mockTransaction,
+                oneOf(mockRes).setStatus(WebdavStatus.SC_NO_CONTENT);
+
+                final StoredObject folderSo = initFolderStoredObject();
+
+                oneOf(mockStore).getStoredObject(mockTransaction,
                         sourceCollectionPath);
+                will(returnValue(folderSo));
+
+                oneOf(mockStore).removeTree(with(same(mockTransaction)),
+                        with(equal(sourceCollectionPath)),
+                        with(Expectations.<Map<String, WebdavException>> anything()));
+                will(new CustomAction("add failure") {
+                    @SuppressWarnings("unchecked")
+                    @Override
+                    public Object invoke(final Invocation invocation) {
+                        ((Map<String, Object>) invocation.getParameter(2)).put(
+                                sourceFilePath, new AccessDeniedException());
+                        return null;
+                    }
+                });
+
+                oneOf(mockRes).sendError(WebdavStatus.SC_FORBIDDEN,
+                        WebdavStatus.getStatusText(WebdavStatus.SC_FORBIDDEN));
             }
         });
 
@@ -182,6 +249,18 @@ public class DoDeleteTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -213,6 +292,18 @@ public class DoDeleteTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -305,6 +396,18 @@ public class DoDeleteTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -340,6 +443,18 @@ public class DoDeleteTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -1,7 +1,15 @@
 package com.github.gv2011.webdav.methods;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -84,6 +92,15 @@ public class DoGetTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -104,6 +121,11 @@ public class DoGetTest extends MockTest {
                 oneOf(mockRes).addHeader(with(any(String.class)),
                         with(any(String.class)));
 
+                oneOf(mockRes).setHeader("Accept-Ranges", "bytes");
+
+                oneOf(mockReq).getHeader("Range");
+                will(returnValue(null));
+
                 oneOf(mockMimeTyper).getMimeType(mockTransaction, "/index.html");
                 will(returnValue("text/foo"));
 
@@ -117,6 +139,9 @@ public class DoGetTest extends MockTest {
                 oneOf(mockRes).getOutputStream();
                 will(returnValue(tos));
 
+                oneOf(mockStore).getResourceBuffer(mockTransaction, "/index.html");
+                will(returnValue(null));
+
                 oneOf(mockStore).getResourceContent(mockTransaction,
                         "/index.html");
                 will(returnValue(dsis));
@@ -140,6 +165,15 @@ public class DoGetTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -170,14 +204,12 @@ public class DoGetTest extends MockTest {
                 oneOf(mockRes).getOutputStream();
                 will(returnValue(tos));
 
-                oneOf(mockStore).getChildrenNames(mockTransaction, "/foo/");
-                will(returnValue(new String[] { "AAA", "BBB" }));
-
-                oneOf(mockStore).getStoredObject(mockTransaction, "/foo//AAA");
-                will(returnValue(aaa));
+                final Map<String, StoredObject> children = new LinkedHashMap<>();
+                children.put("BBB", bbb);
+                children.put("AAA", aaa);
 
-                oneOf(mockStore).getStoredObject(mockTransaction, "/foo//BBB");
-				will(returnValue(bbb));
+                oneOf(mockStore).getChildren(mockTransaction, "/foo/");
+                will(returnValue(children));
 
             }
         });
@@ -188,6 +220,7 @@ public class DoGetTest extends MockTest {
         doGet.execute(mockTransaction, mockReq, mockRes);
 
         assertTrue(tos.toString().length() > 0);
+        assertTrue(tos.toString().indexOf("AAA") < tos.toString().indexOf("BBB"));
 
         _mockery.assertIsSatisfied();
     }
@@ -233,6 +266,15 @@ public class DoGetTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -258,6 +300,11 @@ public class DoGetTest extends MockTest {
                 oneOf(mockRes).addHeader(with(any(String.class)),
                         with(any(String.class)));
 
+                oneOf(mockRes).setHeader("Accept-Ranges", "bytes");
+
+                oneOf(mockReq).getHeader("Range");
+                will(returnValue(null));
+
                 oneOf(mockMimeTyper).getMimeType(mockTransaction, "/alternative");
                 will(returnValue("text/foo"));
 
@@ -272,6 +319,9 @@ public class DoGetTest extends MockTest {
                 oneOf(mockRes).getOutputStream();
                 will(returnValue(tos));
 
+                oneOf(mockStore).getResourceBuffer(mockTransaction, "/alternative");
+                will(returnValue(null));
+
                 oneOf(mockStore).getResourceContent(mockTransaction,
                         "/alternative");
                 will(returnValue(dsis));
@@ -290,4 +340,543 @@ public class DoGetTest extends MockTest {
         _mockery.assertIsSatisfied();
     }
 
+    @Test
+    public void testRangeIsReadFromChannel() throws Exception {
+
+        final Path file = Files.createTempFile("range", null);
+        Files.write(file, resourceContent);
+        final TestingOutputStream out = new TestingOutputStream();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/index.html"));
+
+                final StoredObject so = initFileStoredObject(resourceContent);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/index.html");
+                will(returnValue(so));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockRes).setDateHeader("last-modified",
+                        so.getLastModified().getTime());
+
+                oneOf(mockRes).addHeader(with(any(String.class)),
+                        with(any(String.class)));
+
+                oneOf(mockRes).setHeader("Accept-Ranges", "bytes");
+
+                oneOf(mockReq).getHeader("Range");
+                will(returnValue("bytes=1-5"));
+
+                oneOf(mockReq).getHeader("If-Range");
+                will(returnValue(null));
+
+                oneOf(mockMimeTyper).getMimeType(mockTransaction, "/index.html");
+                will(returnValue("text/foo"));
+
+                oneOf(mockRes).setContentType("text/foo");
+
+                oneOf(mockRes).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+                oneOf(mockRes).setHeader("Content-Range", "bytes 1-5/8");
+
+                oneOf(mockRes).getOutputStream();
+                will(returnValue(out));
+
+                oneOf(mockStore).supportsResourceChannel();
+                will(returnValue(true));
+
+                oneOf(mockStore).getResourceChannel(mockTransaction,
+                        "/index.html");
+                will(returnValue(FileChannel.open(file)));
+            }
+        });
+
+        final DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0);
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        assertEquals("hello", out.toString());
+        Files.delete(file);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testSeveralRangesAreSentAsMultipart() throws Exception {
+
+        final TestingOutputStream out = new TestingOutputStream();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/index.html"));
+
+                final StoredObject so = initFileStoredObject(resourceContent);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/index.html");
+                will(returnValue(so));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockRes).setDateHeader("last-modified",
+                        so.getLastModified().getTime());
+
+                oneOf(mockRes).addHeader(with(any(String.class)),
+                        with(any(String.class)));
+
+                oneOf(mockRes).setHeader("Accept-Ranges", "bytes");
+
+                oneOf(mockReq).getHeader("Range");
+                will(returnValue("bytes=-2,0-0"));
+
+                oneOf(mockReq).getHeader("If-Range");
+                will(returnValue(null));
+
+                oneOf(mockMimeTyper).getMimeType(mockTransaction, "/index.html");
+                will(returnValue("text/foo"));
+
+                oneOf(mockRes).setContentType("text/foo");
+
+                oneOf(mockRes).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+                oneOf(mockRes).setContentType(
+                        "multipart/byteranges; boundary=WEBDAV_SERVLET_BYTERANGES");
+
+                oneOf(mockRes).getOutputStream();
+                will(returnValue(out));
+
+                oneOf(mockStore).supportsResourceChannel();
+                will(returnValue(false));
+
+                oneOf(mockStore).getResourceContent(mockTransaction,
+                        "/index.html");
+                will(returnValue(new ByteArrayInputStream(resourceContent)));
+            }
+        });
+
+        final DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0);
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        assertEquals("\r\n--WEBDAV_SERVLET_BYTERANGES\r\n"
+                + "Content-Type: text/foo\r\n"
+                + "Content-Range: bytes 0-0/8\r\n\r\n<"
+                + "\r\n--WEBDAV_SERVLET_BYTERANGES\r\n"
+                + "Content-Type: text/foo\r\n"
+                + "Content-Range: bytes 6-7/8\r\n\r\n/>"
+                + "\r\n--WEBDAV_SERVLET_BYTERANGES--\r\n", out.toString());
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testUnsatisfiableRangeResultsIn416() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/index.html"));
+
+                final StoredObject so = initFileStoredObject(resourceContent);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/index.html");
+                will(returnValue(so));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockRes).setDateHeader("last-modified",
+                        so.getLastModified().getTime());
+
+                oneOf(mockRes).addHeader(with(any(String.class)),
+                        with(any(String.class)));
+
+                oneOf(mockRes).setHeader("Accept-Ranges", "bytes");
+
+                oneOf(mockReq).getHeader("Range");
+                will(returnValue("bytes=8-"));
+
+                oneOf(mockReq).getHeader("If-Range");
+                will(returnValue(null));
+
+                oneOf(mockRes).setHeader("Content-Range", "bytes */8");
+
+                oneOf(mockRes).sendError(
+                        HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            }
+        });
+
+        final DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0);
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testChangedResourceIsSentWhole() throws Exception {
+
+        final TestingOutputStream out = new TestingOutputStream();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/index.html"));
+
+                final StoredObject so = initFileStoredObject(resourceContent);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/index.html");
+                will(returnValue(so));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockRes).setDateHeader("last-modified",
+                        so.getLastModified().getTime());
+
+                oneOf(mockRes).addHeader(with(any(String.class)),
+                        with(any(String.class)));
+
+                oneOf(mockRes).setHeader("Accept-Ranges", "bytes");
+
+                oneOf(mockReq).getHeader("Range");
+                will(returnValue("bytes=1-5"));
+
+                oneOf(mockReq).getHeader("If-Range");
+                will(returnValue("Sat, 01 Jan 2000 00:00:00 GMT"));
+
+                oneOf(mockReq).getDateHeader("If-Range");
+                will(returnValue(946684800000L));
+
+                oneOf(mockMimeTyper).getMimeType(mockTransaction, "/index.html");
+                will(returnValue("text/foo"));
+
+                oneOf(mockRes).setContentType("text/foo");
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/index.html");
+                will(returnValue(so));
+
+                oneOf(mockRes).getOutputStream();
+                will(returnValue(out));
+
+                oneOf(mockStore).getResourceBuffer(mockTransaction, "/index.html");
+                will(returnValue(null));
+
+                oneOf(mockStore).getResourceContent(mockTransaction,
+                        "/index.html");
+                will(returnValue(new ByteArrayInputStream(resourceContent)));
+            }
+        });
+
+        final DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0);
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        assertEquals("<hello/>", out.toString());
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testUnmodifiedResourceResultsIn304() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/index.html"));
+
+                final StoredObject so = initFileStoredObject(resourceContent);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/index.html");
+                will(returnValue(so));
+
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue("Fri, 01 Jan 2100 00:00:00 GMT"));
+
+                oneOf(mockRes).setHeader(with("ETag"), with(any(String.class)));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_NOT_MODIFIED);
+            }
+        });
+
+        final DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0);
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testWeakETagMatchResultsIn304() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/index.html"));
+
+                final StoredObject so = initFileStoredObject(resourceContent);
+                so.setETag("abc");
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/index.html");
+                will(returnValue(so));
+
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue("\"xyz\", W/\"abc\""));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
+                oneOf(mockRes).setHeader("ETag", "\"abc\"");
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_NOT_MODIFIED);
+            }
+        });
+
+        final DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0);
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testContainerWritesChannel() throws Exception {
+
+        final Path file = Files.createTempFile("transfer", null);
+        Files.write(file, resourceContent);
+        final SendContentOutputStream out = new SendContentOutputStream();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/index.html"));
+
+                final StoredObject so = initFileStoredObject(resourceContent);
+
+                exactly(2).of(mockStore).getStoredObject(mockTransaction,
+                        "/index.html");
+                will(returnValue(so));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockRes).setDateHeader("last-modified",
+                        so.getLastModified().getTime());
+
+                oneOf(mockRes).addHeader(with(any(String.class)),
+                        with(any(String.class)));
+
+                oneOf(mockRes).setHeader("Accept-Ranges", "bytes");
+
+                oneOf(mockReq).getHeader("Range");
+                will(returnValue(null));
+
+                oneOf(mockMimeTyper).getMimeType(mockTransaction, "/index.html");
+                will(returnValue("text/foo"));
+
+                oneOf(mockRes).setContentType("text/foo");
+
+                oneOf(mockRes).getOutputStream();
+                will(returnValue(out));
+
+                oneOf(mockStore).getResourceBuffer(mockTransaction, "/index.html");
+                will(returnValue(null));
+
+                oneOf(mockStore).supportsResourceChannel();
+                will(returnValue(true));
+
+                oneOf(mockStore).getResourceChannel(mockTransaction,
+                        "/index.html");
+                will(returnValue(FileChannel.open(file)));
+            }
+        });
+
+        final DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0);
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        assertEquals("<hello/>", out.toString());
+        Files.delete(file);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testStoreBufferIsPreferredToChannel() throws Exception {
+
+        final SendContentOutputStream out = new SendContentOutputStream();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/index.html"));
+
+                final StoredObject so = initFileStoredObject(resourceContent);
+
+                exactly(2).of(mockStore).getStoredObject(mockTransaction,
+                        "/index.html");
+                will(returnValue(so));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockRes).setDateHeader("last-modified",
+                        so.getLastModified().getTime());
+
+                oneOf(mockRes).addHeader(with(any(String.class)),
+                        with(any(String.class)));
+
+                oneOf(mockRes).setHeader("Accept-Ranges", "bytes");
+
+                oneOf(mockReq).getHeader("Range");
+                will(returnValue(null));
+
+                oneOf(mockMimeTyper).getMimeType(mockTransaction, "/index.html");
+                will(returnValue("text/foo"));
+
+                oneOf(mockRes).setContentType("text/foo");
+
+                oneOf(mockRes).getOutputStream();
+                will(returnValue(out));
+
+                oneOf(mockStore).getResourceBuffer(mockTransaction, "/index.html");
+                will(returnValue(ByteBuffer.wrap(resourceContent)));
+
+                never(mockStore).getResourceChannel(mockTransaction,
+                        "/index.html");
+            }
+        });
+
+        final DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0);
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        assertEquals("<hello/>", out.toString());
+
+        _mockery.assertIsSatisfied();
+    }
+
+    /**
+     * Output with a sendContent method, like Jetty's.
+     */
+    public static class SendContentOutputStream extends TestingOutputStream {
+
+        public void sendContent(final ReadableByteChannel in)
+                throws IOException {
+            final ByteBuffer buffer = ByteBuffer.allocate(3);
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    write(buffer.get());
+                }
+                buffer.clear();
+            }
+        }
+    }
 }
@@ -69,6 +69,15 @@ public class DoHeadTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -89,6 +98,11 @@ public class DoHeadTest extends MockTest {
                 oneOf(mockRes).addHeader(with(any(String.class)),
                         with(any(String.class)));
 
+                oneOf(mockRes).setHeader("Accept-Ranges", "bytes");
+
+                oneOf(mockReq).getHeader("Range");
+                will(returnValue(null));
+
                 oneOf(mockMimeTyper).getMimeType(mockTransaction, "/index.html");
                 will(returnValue("text/foo"));
 
@@ -65,7 +65,7 @@ public class DoMoveTest extends MockTest {
         final DoDelete doDelete = new DoDelete(mockStore, resLocks, readOnly);
         final DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, readOnly);
 
-        final DoMove doMove = new DoMove(resLocks, doDelete, doCopy, readOnly);
+        final DoMove doMove = new DoMove(resLocks, doCopy, readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -77,6 +77,11 @@ public class DoMoveTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                // no native move, fall back to copy and delete
+                oneOf(mockStore).moveObject(with(any(ITransaction.class)),
+                        with(any(String.class)), with(any(String.class)));
+                will(returnValue(false));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -122,6 +127,10 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
                 will(returnValue(sourceFileSo));
 
+                oneOf(mockStore).copyObject(with(any(ITransaction.class)),
+                        with(any(String.class)), with(any(String.class)));
+                will(returnValue(false));
+
                 oneOf(mockStore).createResource(mockTransaction, destFilePath);
 
                 oneOf(mockStore).getResourceContent(mockTransaction,
@@ -150,7 +159,7 @@ public class DoMoveTest extends MockTest {
         final DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         final DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
 
-        final DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        final DoMove doMove = new DoMove(resLocks, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -212,7 +221,7 @@ public class DoMoveTest extends MockTest {
         final DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         final DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
 
-        final DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        final DoMove doMove = new DoMove(resLocks, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -225,6 +234,11 @@ public class DoMoveTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                // no native move, fall back to copy and delete
+                oneOf(mockStore).moveObject(with(any(ITransaction.class)),
+                        with(any(String.class)), with(any(String.class)));
+                will(returnValue(false));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -275,6 +289,10 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
                 will(returnValue(sourceFileSo));
 
+                oneOf(mockStore).copyObject(with(any(ITransaction.class)),
+                        with(any(String.class)), with(any(String.class)));
+                will(returnValue(false));
+
                 oneOf(mockStore).createResource(mockTransaction, destFilePath);
 
                 oneOf(mockStore).getResourceContent(mockTransaction,
@@ -301,7 +319,7 @@ public class DoMoveTest extends MockTest {
         final DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         final DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
 
-        final DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        final DoMove doMove = new DoMove(resLocks, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -356,7 +374,7 @@ public class DoMoveTest extends MockTest {
         final DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         final DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
 
-        final DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        final DoMove doMove = new DoMove(resLocks, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -403,7 +421,7 @@ public class DoMoveTest extends MockTest {
         final DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         final DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
 
-        final DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        final DoMove doMove = new DoMove(resLocks, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -416,6 +434,11 @@ public class DoMoveTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                // no native move, fall back to copy and delete
+                oneOf(mockStore).moveObject(with(any(ITransaction.class)),
+                        with(any(String.class)), with(any(String.class)));
+                will(returnValue(false));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -482,6 +505,10 @@ public class DoMoveTest extends MockTest {
                         sourceCollectionPath + "/sourceFile");
                 will(returnValue(sourceFileSo));
 
+                oneOf(mockStore).copyObject(with(any(ITransaction.class)),
+                        with(any(String.class)), with(any(String.class)));
+                will(returnValue(false));
+
                 oneOf(mockStore).createResource(mockTransaction,
                         destCollectionPath + "/sourceFile");
 
@@ -525,7 +552,7 @@ public class DoMoveTest extends MockTest {
         final DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         final DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
 
-        final DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        final DoMove doMove = new DoMove(resLocks, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -588,7 +615,7 @@ public class DoMoveTest extends MockTest {
         final DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         final DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
 
-        final DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        final DoMove doMove = new DoMove(resLocks, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -601,6 +628,11 @@ public class DoMoveTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                // no native move, fall back to copy and delete
+                oneOf(mockStore).moveObject(with(any(ITransaction.class)),
+                        with(any(String.class)), with(any(String.class)));
+                will(returnValue(false));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -679,6 +711,10 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
                 will(returnValue(sourceFileSo));
 
+                oneOf(mockStore).copyObject(with(any(ITransaction.class)),
+                        with(any(String.class)), with(any(String.class)));
+                will(returnValue(false));
+
                 oneOf(mockStore).createResource(mockTransaction,
                         overwritePath + "/sourceFile");
 
@@ -721,7 +757,7 @@ public class DoMoveTest extends MockTest {
         final DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         final DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
 
-        final DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        final DoMove doMove = new DoMove(resLocks, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
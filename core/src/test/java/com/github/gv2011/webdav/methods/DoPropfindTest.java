@@ -1,6 +1,9 @@
 package com.github.gv2011.webdav.methods;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -16,6 +19,7 @@ import com.github.gv2011.webdav.StoredObject;
 import com.github.gv2011.webdav.WebdavStatus;
 import com.github.gv2011.webdav.locking.ResourceLocks;
 import com.github.gv2011.webdav.methods.DoPropfind;
+import com.github.gv2011.webdav.methods.PropfindCache;
 import com.github.gv2011.webdav.testutil.MockTest;
 
 public class DoPropfindTest extends MockTest {
@@ -77,54 +81,128 @@ public class DoPropfindTest extends MockTest {
                 oneOf(mockMimeTyper).getMimeType(mockTransaction, path);
                 will(returnValue("text/xml; charset=UTF-8"));
 
-                oneOf(mockStore).getStoredObject(mockTransaction, path);
-                will(returnValue(rootSo));
+                final Map<String, StoredObject> children = new LinkedHashMap<>();
+                children.put("file1", initFileStoredObject(resourceContent));
+                children.put("file2", initFileStoredObject(resourceContent));
 
-                oneOf(mockReq).getContextPath();
+                oneOf(mockStore).getChildren(mockTransaction, path);
+                will(returnValue(children));
+
+                exactly(3).of(mockReq).getContextPath();
                 will(returnValue(""));
 
-                oneOf(mockReq).getServletPath();
+                exactly(3).of(mockReq).getServletPath();
                 will(returnValue(path));
+            }
+        });
 
-                oneOf(mockStore).getChildrenNames(mockTransaction, path);
-                will(returnValue(new String[] { "file1", "file2" }));
+        final DoPropfind doPropfind = new DoPropfind(mockStore, new ResourceLocks(),
+                mockMimeTyper);
+        doPropfind.execute(mockTransaction, mockReq, mockRes);
 
-                final StoredObject file1So = initFileStoredObject(resourceContent);
+        _mockery.assertIsSatisfied();
+    }
 
-                oneOf(mockStore).getStoredObject(mockTransaction, path + "file1");
-                will(returnValue(file1So));
+    @Test
+    public void doPropFindWithInfiniteDepthIsRefused() throws Exception {
+        final StringWriter out = new StringWriter();
 
-                oneOf(mockReq).getContextPath();
-                will(returnValue(""));
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
 
-                oneOf(mockReq).getServletPath();
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/"));
+
+                oneOf(mockReq).getHeader("Depth");
+                will(returnValue("infinity"));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_FORBIDDEN);
+
+                oneOf(mockRes).setContentType("text/xml; charset=UTF-8");
+
+                oneOf(mockRes).getWriter();
+                will(returnValue(new PrintWriter(out)));
+            }
+        });
+
+        final DoPropfind doPropfind = new DoPropfind(mockStore, new ResourceLocks(),
+                mockMimeTyper);
+        doPropfind.setLimits(true, 0, 0);
+        doPropfind.execute(mockTransaction, mockReq, mockRes);
+
+        assertTrue(out.toString().contains("<D:propfind-finite-depth/>"));
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void doPropFindStopsAtNodeLimit() throws Exception {
+        final String path = "/";
+        final StringWriter out = new StringWriter();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
                 will(returnValue(path));
 
-                oneOf(mockStore)
-                        .getChildrenNames(mockTransaction, path + "file1");
-                will(returnValue(new String[] {}));
+                oneOf(mockReq).getHeader("Depth");
+                will(returnValue("infinity"));
 
-                final StoredObject file2So = initFileStoredObject(resourceContent);
+                final StoredObject rootSo = initFolderStoredObject();
 
-                oneOf(mockStore).getStoredObject(mockTransaction, path + "file2");
-                will(returnValue(file2So));
+                oneOf(mockStore).getStoredObject(mockTransaction, path);
+                will(returnValue(rootSo));
 
-                oneOf(mockReq).getContextPath();
-                will(returnValue(""));
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
 
-                oneOf(mockReq).getServletPath();
+                oneOf(mockReq).getPathInfo();
                 will(returnValue(path));
 
-                oneOf(mockStore)
-                        .getChildrenNames(mockTransaction, path + "file2");
-                will(returnValue(new String[] {}));
+                oneOf(mockReq).getContentLength();
+                will(returnValue(0));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_MULTI_STATUS);
+
+                oneOf(mockRes).setContentType("text/xml; charset=UTF-8");
+
+                oneOf(mockRes).getWriter();
+                will(returnValue(new PrintWriter(out)));
+
+                oneOf(mockMimeTyper).getMimeType(mockTransaction, path);
+                will(returnValue("text/xml; charset=UTF-8"));
+
+                final Map<String, StoredObject> children = new LinkedHashMap<>();
+                children.put("file1", initFileStoredObject(resourceContent));
+                children.put("file2", initFileStoredObject(resourceContent));
+
+                oneOf(mockStore).getChildren(mockTransaction, path);
+                will(returnValue(children));
+
+                // root, file1 and the truncation marker
+                exactly(3).of(mockReq).getContextPath();
+                will(returnValue(""));
+
+                exactly(3).of(mockReq).getServletPath();
+                will(returnValue(path));
             }
         });
 
         final DoPropfind doPropfind = new DoPropfind(mockStore, new ResourceLocks(),
                 mockMimeTyper);
+        doPropfind.setLimits(false, 2, 0);
         doPropfind.execute(mockTransaction, mockReq, mockRes);
 
+        final String xml = out.toString();
+        assertTrue(xml.contains("/file1"));
+        assertFalse(xml.contains("/file2"));
+        assertTrue(xml.contains("HTTP/1.1 507 Insufficient Storage"));
+
         _mockery.assertIsSatisfied();
     }
 
@@ -168,9 +246,6 @@ public class DoPropfindTest extends MockTest {
                 oneOf(mockMimeTyper).getMimeType(mockTransaction, path);
                 will(returnValue("text/xml; charset=UTF-8"));
 
-                oneOf(mockStore).getStoredObject(mockTransaction, path);
-                will(returnValue(fileSo));
-
                 oneOf(mockReq).getContextPath();
                 will(returnValue(""));
 
@@ -187,6 +262,107 @@ public class DoPropfindTest extends MockTest {
         _mockery.assertIsSatisfied();
     }
 
+    @Test
+    public void doPropFindIsServedFromCache() throws Exception {
+        final String path = "/testFile";
+        final StoredObject fileSo = initFileStoredObject(resourceContent);
+        final StringWriter rendered = new StringWriter();
+
+        final DoPropfind doPropfind = new DoPropfind(mockStore, new ResourceLocks(),
+                mockMimeTyper);
+        doPropfind.setCache(new PropfindCache(10, 60000));
+
+        _mockery.checking(new Expectations() {
+            {
+                exactly(2).of(mockReq).getAttribute(
+                        "javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                exactly(2).of(mockReq).getPathInfo();
+                will(returnValue(path));
+
+                oneOf(mockReq).getHeader("Depth");
+                will(returnValue("0"));
+
+                oneOf(mockStore).getStoredObject(mockTransaction, path);
+                will(returnValue(fileSo));
+
+                oneOf(mockReq).getContentLength();
+                will(returnValue(0));
+
+                oneOf(mockTransaction).getPrincipal();
+                will(returnValue(null));
+
+                // the cache key and the href
+                exactly(2).of(mockReq).getContextPath();
+                will(returnValue(""));
+
+                exactly(2).of(mockReq).getServletPath();
+                will(returnValue("/"));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_MULTI_STATUS);
+
+                oneOf(mockRes).setContentType("text/xml; charset=UTF-8");
+
+                oneOf(mockRes).getWriter();
+                will(returnValue(new PrintWriter(rendered)));
+
+                oneOf(mockMimeTyper).getMimeType(mockTransaction, path);
+                will(returnValue("text/plain"));
+            }
+        });
+
+        doPropfind.execute(mockTransaction, mockReq, mockRes);
+        _mockery.assertIsSatisfied();
+
+        final TestingOutputStream out = new TestingOutputStream();
+        final int length = rendered.toString().getBytes("UTF-8").length;
+
+        _mockery.checking(new Expectations() {
+            {
+                exactly(2).of(mockReq).getAttribute(
+                        "javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                exactly(2).of(mockReq).getPathInfo();
+                will(returnValue(path));
+
+                oneOf(mockReq).getHeader("Depth");
+                will(returnValue("0"));
+
+                oneOf(mockStore).getStoredObject(mockTransaction, path);
+                will(returnValue(fileSo));
+
+                oneOf(mockReq).getContentLength();
+                will(returnValue(0));
+
+                oneOf(mockTransaction).getPrincipal();
+                will(returnValue(null));
+
+                oneOf(mockReq).getContextPath();
+                will(returnValue(""));
+
+                oneOf(mockReq).getServletPath();
+                will(returnValue("/"));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_MULTI_STATUS);
+
+                oneOf(mockRes).setContentType("text/xml; charset=UTF-8");
+
+                oneOf(mockRes).setContentLength(length);
+
+                oneOf(mockRes).getOutputStream();
+                will(returnValue(out));
+            }
+        });
+
+        doPropfind.execute(mockTransaction, mockReq, mockRes);
+
+        assertEquals(rendered.toString(), out.toString());
+
+        _mockery.assertIsSatisfied();
+    }
+
     @Test
     public void doPropFindOnNonExistingResource() throws Exception {
         final String path = "/notExists";
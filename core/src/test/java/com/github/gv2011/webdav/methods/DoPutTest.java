@@ -63,6 +63,18 @@ public class DoPutTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -89,8 +101,11 @@ public class DoPutTest extends MockTest {
                 oneOf(mockReq).getInputStream();
                 will(returnValue(dsis));
 
+                oneOf(mockReq).getContentLengthLong();
+                will(returnValue(8L));
+
                 oneOf(mockStore).setResourceContent(mockTransaction, path, dsis,
-                        null, null);
+                        null, null, 8L);
                 will(returnValue(8L));
 
                 fileSo = initFileStoredObject(resourceContent);
@@ -110,6 +125,92 @@ public class DoPutTest extends MockTest {
         _mockery.assertIsSatisfied();
     }
 
+    @Test
+    public void testDoPutIfMatchFailsResultsIn412() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(path));
+
+                oneOf(mockReq).getHeader("User-Agent");
+                will(returnValue("Goliath agent"));
+
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue("\"xyz\""));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
+                final StoredObject fileSo = initFileStoredObject(resourceContent);
+                fileSo.setETag("abc");
+
+                oneOf(mockStore).getStoredObject(mockTransaction, path);
+                will(returnValue(fileSo));
+
+                oneOf(mockRes).sendError(WebdavStatus.SC_PRECONDITION_FAILED);
+            }
+        });
+
+        final DoPut doPut = new DoPut(mockStore, new ResourceLocks(),
+                !readOnly, lazyFolderCreationOnPut);
+        doPut.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testDoPutIfNoneMatchOnExistingResourceResultsIn412()
+            throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(path));
+
+                oneOf(mockReq).getHeader("User-Agent");
+                will(returnValue("Goliath agent"));
+
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue("*"));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
+                final StoredObject fileSo = initFileStoredObject(resourceContent);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, path);
+                will(returnValue(fileSo));
+
+                oneOf(mockRes).sendError(WebdavStatus.SC_PRECONDITION_FAILED);
+            }
+        });
+
+        final DoPut doPut = new DoPut(mockStore, new ResourceLocks(),
+                !readOnly, lazyFolderCreationOnPut);
+        doPut.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
     @Test
     @Ignore("Broken, path /tmp/XMLTestFile must not be used.")
     public void testDoPutIfLazyFolderCreationOnPutIsFalse() throws Exception {
@@ -155,6 +256,18 @@ public class DoPutTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -183,8 +296,11 @@ public class DoPutTest extends MockTest {
                 oneOf(mockReq).getInputStream();
                 will(returnValue(dsis));
 
+                oneOf(mockReq).getContentLengthLong();
+                will(returnValue(-1L));
+
                 oneOf(mockStore).setResourceContent(mockTransaction, path, dsis,
-                        null, null);
+                        null, null, -1L);
                 will(returnValue(8L));
 
                 fileSo = initFileStoredObject(resourceContent);
@@ -207,6 +323,18 @@ public class DoPutTest extends MockTest {
 
         _mockery.checking(new Expectations() {
             {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(null));
+
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
@@ -400,8 +528,11 @@ public class DoPutTest extends MockTest {
                 oneOf(mockReq).getInputStream();
                 will(returnValue(dsis));
 
+                oneOf(mockReq).getContentLengthLong();
+                will(returnValue(-1L));
+
                 oneOf(mockStore).setResourceContent(mockTransaction, path, dsis,
-                        null, null);
+                        null, null, -1L);
                 will(returnValue(8L));
 
                 final StoredObject newResourceSo = initFileStoredObject(resourceContent);
@@ -0,0 +1,65 @@
+package com.github.gv2011.webdav.methods;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+@SuppressWarnings("deprecation")
+public class PropfindCacheTest extends Assert {
+
+    private static final byte[] BODY = "<multistatus/>".getBytes();
+
+    @Test
+    public void testHitWhileUnchanged() {
+        final PropfindCache cache = new PropfindCache(10, 60000);
+        cache.put("a", cache.getGeneration(), 1000, BODY);
+
+        assertSame(BODY, cache.get("a", 1000));
+        assertNull(cache.get("b", 1000));
+    }
+
+    @Test
+    public void testModifiedCollectionMisses() {
+        final PropfindCache cache = new PropfindCache(10, 60000);
+        cache.put("a", cache.getGeneration(), 1000, BODY);
+
+        assertNull(cache.get("a", 2000));
+        assertNull(cache.get("a", 1000));
+    }
+
+    @Test
+    public void testInvalidateDropsResponses() {
+        final PropfindCache cache = new PropfindCache(10, 60000);
+        final long generation = cache.getGeneration();
+        cache.put("a", generation, 1000, BODY);
+
+        cache.invalidate();
+        assertNull(cache.get("a", 1000));
+
+        // rendered before the invalidation
+        cache.put("a", generation, 1000, BODY);
+        assertNull(cache.get("a", 1000));
+    }
+
+    @Test
+    public void testExpiredResponseMisses() throws Exception {
+        final PropfindCache cache = new PropfindCache(10, 1);
+        cache.put("a", cache.getGeneration(), 1000, BODY);
+        Thread.sleep(10);
+
+        assertNull(cache.get("a", 1000));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        final PropfindCache cache = new PropfindCache(2, 60000);
+        cache.put("a", cache.getGeneration(), 1000, BODY);
+        cache.put("b", cache.getGeneration(), 1000, BODY);
+        cache.get("a", 1000);
+        cache.put("c", cache.getGeneration(), 1000, BODY);
+
+        assertNotNull(cache.get("a", 1000));
+        assertNull(cache.get("b", 1000));
+        assertNotNull(cache.get("c", 1000));
+    }
+}
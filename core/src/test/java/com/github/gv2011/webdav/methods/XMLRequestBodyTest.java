@@ -0,0 +1,66 @@
+package com.github.gv2011.webdav.methods;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+@SuppressWarnings("deprecation")
+public class XMLRequestBodyTest extends Assert {
+
+    @Test
+    public void testPropfindProperties() throws Exception {
+        final XMLRequestBody body = parse("<?xml version=\"1.0\" encoding=\"utf-8\" ?>"
+                + "<D:propfind xmlns:D=\"DAV:\" xmlns:Z=\"urn:z\"><D:prop>"
+                + "<D:getetag/><Z:author><Z:name>x</Z:name></Z:author>"
+                + "</D:prop></D:propfind>");
+
+        assertTrue(body.has("prop"));
+        assertFalse(body.has("allprop"));
+        assertEquals(Arrays.asList("DAV::getetag", "urn:z:author"), body
+                .getChildren("prop"));
+        assertFalse(body.has("prop/author/name"));
+    }
+
+    @Test
+    public void testProppatchCollectsAllSetElements() throws Exception {
+        final XMLRequestBody body = parse("<D:propertyupdate xmlns:D=\"DAV:\">"
+                + "<D:set><D:prop><D:a>1</D:a></D:prop></D:set>"
+                + "<D:remove><D:prop><D:b/></D:prop></D:remove>"
+                + "<D:set><D:prop><D:c>2</D:c></D:prop></D:set>"
+                + "</D:propertyupdate>");
+
+        assertEquals(Arrays.asList("DAV::a", "DAV::c"), body
+                .getChildren("set/prop"));
+        assertEquals(Arrays.asList("DAV::b"), body.getChildren("remove/prop"));
+    }
+
+    @Test
+    public void testLockinfoWithWhiteSpace() throws Exception {
+        final XMLRequestBody body = parse("<D:lockinfo xmlns:D='DAV:'>\n"
+                + "  <D:lockscope><D:exclusive/></D:lockscope>\n"
+                + "  <D:locktype><D:write/></D:locktype>\n"
+                + "  <D:owner>\n    <D:href>the owner</D:href>\n  </D:owner>\n"
+                + "</D:lockinfo>");
+
+        assertEquals(Arrays.asList("DAV::exclusive"), body
+                .getChildren("lockscope"));
+        assertEquals(Arrays.asList("DAV::write"), body.getChildren("locktype"));
+        assertEquals("the owner", body.getText("owner"));
+        assertNull(body.getText("lockscope"));
+    }
+
+    @Test(expected = XMLStreamException.class)
+    public void testMalformedBody() throws Exception {
+        parse("<D:propfind xmlns:D=\"DAV:\"><D:prop>");
+    }
+
+    private static XMLRequestBody parse(final String xml)
+            throws XMLStreamException {
+        return XMLRequestBody.parse(new ByteArrayInputStream(xml.getBytes()));
+    }
+}